@@ -0,0 +1,56 @@
+package com.flsl.fileio.benchmarks;
+
+import com.flsl.fileio.LineIndex;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test data shared by the benchmarks.
+ */
+final class BenchmarkFiles {
+    static final String END_MARKER = "#END#";
+    
+    private BenchmarkFiles() {
+    }
+    
+    /**
+     * Lines of printable ASCII, each exactly lineLength chars long.
+     */
+    static List<String> lines(long totalBytes, int lineLength) {
+        Random random = new Random(42);
+        int count = (int) Math.max(1, totalBytes / (lineLength + 1));
+        List<String> lines = new ArrayList<>(count);
+        char[] chars = new char[lineLength];
+        for (int i = 0; i < count; i++) {
+            for (int k = 0; k < lineLength; k++) {
+                chars[k] = (char) ('a' + random.nextInt(26));
+            }
+            lines.add(new String(chars));
+        }
+        return lines;
+    }
+    
+    /**
+     * Writes a temporary text file of about totalBytes, ending with END_MARKER.
+     */
+    static Path textFile(long totalBytes, int lineLength) throws IOException {
+        Path path = Files.createTempFile("flsl-bench-", ".txt");
+        List<String> lines = lines(totalBytes, lineLength);
+        lines.add(END_MARKER);
+        Files.write(path, lines, StandardCharsets.UTF_8);
+        return path;
+    }
+    
+    static void delete(Path path) throws IOException {
+        if (path != null) {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(LineIndex.sidecarOf(path));
+        }
+    }
+}
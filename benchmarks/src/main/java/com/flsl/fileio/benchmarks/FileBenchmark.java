@@ -0,0 +1,72 @@
+package com.flsl.fileio.benchmarks;
+
+import com.flsl.fileio.File;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole-file operations of File.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileBenchmark {
+    
+    @Param({"65536", "1048576", "67108864"})
+    public long fileBytes;
+    
+    private Path source;
+    private Path target;
+    private File file;
+    
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        source = BenchmarkFiles.textFile(fileBytes, 128);
+        target = source.resolveSibling(source.getFileName() + ".copy");
+        file = new File(source.toString());
+    }
+    
+    /**
+     * copyTo refuses to overwrite, so the copy is removed after every call.
+     */
+    @TearDown(Level.Invocation)
+    public void deleteCopy() throws IOException {
+        Files.deleteIfExists(target);
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        BenchmarkFiles.delete(source);
+        Files.deleteIfExists(target);
+    }
+    
+    @Benchmark
+    public boolean copyTo() throws IOException {
+        return file.copyTo(target.toString());
+    }
+    
+    @Benchmark
+    public byte[] readBytes() throws IOException {
+        return file.readBytes();
+    }
+}
@@ -0,0 +1,119 @@
+package com.flsl.fileio.benchmarks;
+
+import com.flsl.fileio.LineIndex;
+import com.flsl.fileio.Reader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Whole-file read strategies of Reader over one file per parameter set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmark {
+    
+    @Param({"1048576", "67108864"})
+    public long fileBytes;
+    
+    @Param({"16", "128", "1024"})
+    public int lineLength;
+    
+    private Path path;
+    
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        path = BenchmarkFiles.textFile(fileBytes, lineLength);
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        BenchmarkFiles.delete(path);
+    }
+    
+    @Benchmark
+    public void readLine(Blackhole blackhole) throws IOException {
+        try (Reader reader = new Reader(path.toString())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                blackhole.consume(line);
+            }
+        }
+    }
+    
+    @Benchmark
+    public String readAll() throws IOException {
+        try (Reader reader = new Reader(path.toString())) {
+            return reader.readAll();
+        }
+    }
+    
+    @Benchmark
+    public List<String> readLines() throws IOException {
+        try (Reader reader = new Reader(path.toString())) {
+            return reader.readLines();
+        }
+    }
+    
+    /**
+     * Scans for a delimiter that only occurs at the end of the file.
+     */
+    @Benchmark
+    public String readUntil() throws IOException {
+        try (Reader reader = new Reader(path.toString())) {
+            return reader.readUntil(BenchmarkFiles.END_MARKER);
+        }
+    }
+    
+    /**
+     * First count of a file: scans the bytes and writes the sidecar index.
+     */
+    @Benchmark
+    public int countLinesCold() throws IOException {
+        Files.deleteIfExists(LineIndex.sidecarOf(path));
+        return new Reader(path.toString()).countLines();
+    }
+    
+    /**
+     * Later counts load the sidecar index instead of scanning.
+     */
+    @Benchmark
+    public int countLinesIndexed() throws IOException {
+        return new Reader(path.toString()).countLines();
+    }
+    
+    @Benchmark
+    public void forEachLineMapped(Blackhole blackhole) throws IOException {
+        new Reader(path.toString()).forEachLine(blackhole::consume);
+    }
+    
+    @Benchmark
+    public long linesStream() throws IOException {
+        try (Stream<String> lines = Reader.lines(path.toString())) {
+            return lines.count();
+        }
+    }
+}
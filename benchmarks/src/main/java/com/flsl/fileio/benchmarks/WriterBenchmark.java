@@ -0,0 +1,119 @@
+package com.flsl.fileio.benchmarks;
+
+import com.flsl.fileio.Writer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writes the same lines through each Writer strategy; every invocation
+ * produces a complete file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmark {
+    
+    @Param({"1048576", "67108864"})
+    public long fileBytes;
+    
+    @Param({"16", "128", "1024"})
+    public int lineLength;
+    
+    private List<String> lines;
+    private Path path;
+    
+    @Setup(Level.Trial)
+    public void createLines() throws IOException {
+        lines = BenchmarkFiles.lines(fileBytes, lineLength);
+        path = Files.createTempFile("flsl-bench-", ".txt");
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        BenchmarkFiles.delete(path);
+    }
+    
+    @Benchmark
+    public void write() throws IOException {
+        Writer writer = new Writer(path.toString());
+        try {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write("\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+    
+    @Benchmark
+    public void writeLine() throws IOException {
+        Writer writer = new Writer(path.toString());
+        try {
+            for (String line : lines) {
+                writer.writeLine(line);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+    
+    @Benchmark
+    public void writeLines() throws IOException {
+        Writer writer = new Writer(path.toString());
+        try {
+            writer.writeLines(lines);
+        } finally {
+            writer.close();
+        }
+    }
+    
+    /**
+     * writeLines through the BufferedWriter path, for comparison with the
+     * direct channel encoder used by default.
+     */
+    @Benchmark
+    public void writeLinesBuffered() throws IOException {
+        Writer writer = new Writer(path.toString());
+        writer.setDirectEncoding(false);
+        try {
+            writer.writeLines(lines);
+        } finally {
+            writer.close();
+        }
+    }
+    
+    @Benchmark
+    public void writef() throws IOException {
+        Writer writer = new Writer(path.toString());
+        try {
+            int i = 0;
+            for (String line : lines) {
+                writer.writef("%d %s%n", i++, line);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
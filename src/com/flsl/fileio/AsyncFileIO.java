@@ -0,0 +1,267 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Non-blocking whole-file reads and writes on AsynchronousFileChannel,
+ * plus bulk variants that keep a bounded number of files in flight.
+ * Completion chains start the next file, so no thread blocks while
+ * waiting for the disk.
+ */
+public class AsyncFileIO {
+    private static final Set<OpenOption> READ = Collections.<OpenOption>singleton(StandardOpenOption.READ);
+    private static final Set<OpenOption> WRITE = new HashSet<OpenOption>(Arrays.asList(
+        StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+
+    private AsyncFileIO() {
+    }
+
+    // ----- SINGLE FILE -----
+    /**
+     * Reads the whole file. A null executor uses the channel's default pool.
+     */
+    public static CompletableFuture<byte[]> readBytes(Path path, ExecutorService executor) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        AsynchronousFileChannel channel = null;
+        try {
+            channel = AsynchronousFileChannel.open(path, READ, executor);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("File too large to read into an array: " + path);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            readFrom(channel, buffer, 0, result);
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            // Nothing was started on the channel; close it here
+            if (channel != null) {
+                closeAndFail(channel, result, e);
+            } else {
+                result.completeExceptionally(e);
+            }
+        }
+        return result;
+    }
+
+    public static CompletableFuture<Void> writeBytes(Path path, byte[] data, ExecutorService executor) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, WRITE, executor);
+            writeTo(channel, ByteBuffer.wrap(data), 0, result);
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the file as UTF-8 lines, with the same strict decoding as Files.readAllLines.
+     */
+    public static CompletableFuture<List<String>> readLines(Path path, ExecutorService executor) {
+        return readBytes(path, executor).thenApply(bytes -> {
+            try {
+                CharBuffer chars = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes));
+                return splitLines(chars);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Writes UTF-8 lines, each followed by the line separator, like Files.write(path, lines).
+     */
+    public static CompletableFuture<Void> writeLines(Path path, List<String> lines, ExecutorService executor) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append(System.lineSeparator());
+        }
+        return writeBytes(path, text.toString().getBytes(StandardCharsets.UTF_8), executor);
+    }
+
+    // ----- BULK -----
+    /**
+     * Reads many files with at most parallelism reads in flight.
+     * The map keeps the order of the input paths; the future fails with
+     * the first error.
+     */
+    public static CompletableFuture<Map<String, byte[]>> readAll(Collection<String> paths, int parallelism,
+                                                                 ExecutorService executor) {
+        List<String> ordered = new ArrayList<>(paths);
+        Map<String, byte[]> results = new ConcurrentHashMap<>();
+        return runBounded(ordered, parallelism,
+            path -> readBytes(Paths.get(path), executor).thenAccept(bytes -> results.put(path, bytes)))
+            .thenApply(done -> {
+                Map<String, byte[]> map = new LinkedHashMap<>();
+                for (String path : ordered) {
+                    map.put(path, results.get(path));
+                }
+                return map;
+            });
+    }
+
+    public static CompletableFuture<Void> writeAll(Map<String, byte[]> files, int parallelism,
+                                                   ExecutorService executor) {
+        List<String> paths = new ArrayList<>(files.keySet());
+        return runBounded(paths, parallelism,
+            path -> writeBytes(Paths.get(path), files.get(path), executor));
+    }
+
+    // ----- PRIVATE HELPER -----
+    private static <T> CompletableFuture<Void> runBounded(List<T> items, int parallelism,
+                                                          Function<T, CompletableFuture<?>> task) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (items.isEmpty()) {
+            done.complete(null);
+            return done;
+        }
+
+        // Drain loop: only one thread launches at a time and synchronous
+        // completions re-run the loop instead of recursing
+        Iterator<T> iterator = items.iterator();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger pass = new AtomicInteger();
+        Runnable[] drain = new Runnable[1];
+        drain[0] = () -> {
+            if (pass.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!done.isDone() && iterator.hasNext() && running.get() < parallelism) {
+                    T item = iterator.next();
+                    running.incrementAndGet();
+                    CompletableFuture<?> future;
+                    try {
+                        future = task.apply(item);
+                    } catch (RuntimeException e) {
+                        done.completeExceptionally(e);
+                        break;
+                    }
+                    future.whenComplete((value, error) -> {
+                        if (error != null) {
+                            done.completeExceptionally(error);
+                        }
+                        running.decrementAndGet();
+                        drain[0].run();
+                    });
+                }
+                if (!iterator.hasNext() && running.get() == 0) {
+                    done.complete(null);
+                }
+            } while (pass.decrementAndGet() != 0);
+        };
+        drain[0].run();
+        return done;
+    }
+
+    private static void readFrom(AsynchronousFileChannel channel, ByteBuffer buffer, long position,
+                                 CompletableFuture<byte[]> result) {
+        if (!buffer.hasRemaining()) {
+            closeAndComplete(channel, result, buffer.array());
+            return;
+        }
+        channel.read(buffer, position, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer read, Void attachment) {
+                if (read < 0) {
+                    // File shrank while reading
+                    byte[] bytes = Arrays.copyOf(buffer.array(), buffer.position());
+                    closeAndComplete(channel, result, bytes);
+                    return;
+                }
+                readFrom(channel, buffer, position + read, result);
+            }
+
+            @Override
+            public void failed(Throwable error, Void attachment) {
+                closeAndFail(channel, result, error);
+            }
+        });
+    }
+
+    private static void writeTo(AsynchronousFileChannel channel, ByteBuffer buffer, long position,
+                                CompletableFuture<Void> result) {
+        if (!buffer.hasRemaining()) {
+            closeAndComplete(channel, result, null);
+            return;
+        }
+        channel.write(buffer, position, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer written, Void attachment) {
+                writeTo(channel, buffer, position + written, result);
+            }
+
+            @Override
+            public void failed(Throwable error, Void attachment) {
+                closeAndFail(channel, result, error);
+            }
+        });
+    }
+
+    private static <T> void closeAndComplete(AsynchronousFileChannel channel,
+                                             CompletableFuture<T> result, T value) {
+        try {
+            channel.close();
+            result.complete(value);
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static void closeAndFail(AsynchronousFileChannel channel, CompletableFuture<?> result,
+                                     Throwable error) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            error.addSuppressed(e);
+        }
+        result.completeExceptionally(error);
+    }
+
+    private static List<String> splitLines(CharBuffer chars) {
+        List<String> lines = new ArrayList<>();
+        int length = chars.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chars.charAt(i);
+            if (c == '\n' || c == '\r') {
+                lines.add(chars.subSequence(start, i).toString());
+                if (c == '\r' && i + 1 < length && chars.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            lines.add(chars.subSequence(start, length).toString());
+        }
+        return lines;
+    }
+}
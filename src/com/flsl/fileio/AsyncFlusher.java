@@ -0,0 +1,295 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background writer behind Writer's async mode.
+ * Producers enqueue text into a bounded ring buffer; one daemon thread
+ * drains it in batches into the underlying java.io.Writer and flushes
+ * (and optionally fsyncs) according to the flush policy.
+ * Once the thread stops (closed, interrupted or failed), producers blocked
+ * on a full buffer, callers waiting in flush() and later calls all get an
+ * IOException instead of waiting for it.
+ */
+class AsyncFlusher {
+    private static final int MAX_BATCH = 1024;
+    // How often blocked producers check that the flusher thread still runs
+    private static final long STOP_CHECK_MILLIS = 100;
+
+    private final java.io.Writer sink;
+    private final FileChannel channel;
+    private final ArrayBlockingQueue<Object> queue;
+    private final Writer.FlushPolicy flushPolicy;
+    private final long flushIntervalMillis;
+    private final boolean fsync;
+    private final Writer.Backpressure backpressure;
+    private final Thread thread;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile IOException failure;
+    private volatile boolean closed;
+    // Set before the flusher thread takes its last items from the queue
+    private volatile boolean stopped;
+
+    /** Queue marker asking the flusher to flush and release the latch. */
+    private static final class FlushRequest {
+        final CountDownLatch done = new CountDownLatch(1);
+        final boolean last;
+
+        FlushRequest(boolean last) {
+            this.last = last;
+        }
+    }
+
+    AsyncFlusher(java.io.Writer sink, FileChannel channel, String name, int capacity,
+                 Writer.FlushPolicy flushPolicy, long flushIntervalMillis,
+                 boolean fsync, Writer.Backpressure backpressure) {
+        this.sink = sink;
+        this.channel = channel;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.flushPolicy = flushPolicy;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.fsync = fsync;
+        this.backpressure = backpressure;
+        this.thread = new Thread(this::run, "flsl-writer-" + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // ----- PRODUCER SIDE -----
+    /**
+     * Enqueues text. Returns false when the text was dropped because the
+     * buffer was full and the backpressure policy is DROP.
+     */
+    boolean offer(String text) throws IOException {
+        checkState();
+        if (backpressure == Writer.Backpressure.DROP) {
+            if (!queue.offer(text)) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            checkTaken(text);
+            return true;
+        }
+        try {
+            enqueue(text);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for buffer space", e);
+        }
+        checkTaken(text);
+        return true;
+    }
+
+    /**
+     * Blocks until everything enqueued before this call is written and flushed.
+     */
+    void flush() throws IOException {
+        checkState();
+        await(new FlushRequest(false));
+    }
+
+    void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (thread.isAlive()) {
+            await(new FlushRequest(true));
+        }
+        if (failure != null) {
+            throw new IOException("Asynchronous write failed", failure);
+        }
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // ----- FLUSHER THREAD -----
+    private void run() {
+        List<Object> batch = new ArrayList<>(MAX_BATCH);
+        long lastFlush = System.currentTimeMillis();
+        boolean dirty = false;
+        FlushRequest last = null;
+
+        try {
+            while (last == null) {
+                try {
+                    Object first = flushPolicy == Writer.FlushPolicy.INTERVAL && dirty
+                        ? queue.poll(Math.max(1, flushIntervalMillis - (System.currentTimeMillis() - lastFlush)),
+                                     TimeUnit.MILLISECONDS)
+                        : queue.take();
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, MAX_BATCH - 1);
+                    }
+
+                    for (int i = 0; i < batch.size(); i++) {
+                        Object item = batch.get(i);
+                        if (item instanceof FlushRequest) {
+                            FlushRequest request = (FlushRequest) item;
+                            if (request.last) {
+                                // Text that raced with close() is still written below
+                                last = request;
+                                stopped = true;
+                                queue.drainTo(batch);
+                                continue;
+                            }
+                            flushSink();
+                            dirty = false;
+                            lastFlush = System.currentTimeMillis();
+                            request.done.countDown();
+                        } else if (failure == null) {
+                            sink.write((String) item);
+                            dirty = true;
+                        }
+                    }
+                    batch.clear();
+
+                    if (last != null) {
+                        flushSink();
+                    } else if (dirty && failure == null) {
+                        long now = System.currentTimeMillis();
+                        if (flushPolicy == Writer.FlushPolicy.PER_BATCH
+                                || (flushPolicy == Writer.FlushPolicy.INTERVAL
+                                    && now - lastFlush >= flushIntervalMillis)) {
+                            flushSink();
+                            dirty = false;
+                            lastFlush = now;
+                        }
+                    }
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                    releaseWaiters(batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            if (failure == null) {
+                failure = new IOException("Writer thread was interrupted", e);
+            }
+        } catch (RuntimeException e) {
+            if (failure == null) {
+                failure = new IOException("Writer thread failed", e);
+            }
+        } finally {
+            stopped = true;
+            if (last == null && failure == null) {
+                failure = new IOException("Writer thread stopped");
+            }
+            // Nothing takes from the queue any more; wake everyone waiting on it
+            releaseWaiters(batch);
+            batch.clear();
+            queue.drainTo(batch);
+            releaseWaiters(batch);
+            if (last != null) {
+                last.done.countDown();
+            }
+        }
+    }
+
+    private void flushSink() throws IOException {
+        if (failure != null) {
+            return;
+        }
+        sink.flush();
+        if (fsync && channel != null) {
+            channel.force(false);
+        }
+    }
+
+    // ----- PRIVATE HELPER -----
+    private void await(FlushRequest request) throws IOException {
+        try {
+            enqueue(request);
+            while (!request.done.await(STOP_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (!thread.isAlive() && request.done.getCount() > 0) {
+                    // Queued after the thread's final drain
+                    checkFailure();
+                    throw new IOException("Writer is closed");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing", e);
+        }
+        checkFailure();
+    }
+
+    /**
+     * Like queue.put(), but gives up once the flusher thread has stopped.
+     */
+    private void enqueue(Object item) throws IOException, InterruptedException {
+        while (!queue.offer(item, STOP_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkStopped();
+        }
+    }
+
+    private void releaseWaiters(List<Object> batch) {
+        for (Object item : batch) {
+            if (item instanceof FlushRequest) {
+                ((FlushRequest) item).done.countDown();
+            }
+        }
+    }
+
+    private void checkState() throws IOException {
+        if (closed) {
+            throw new IOException("Writer is closed");
+        }
+        checkFailure();
+    }
+
+    private void checkStopped() throws IOException {
+        if (stopped) {
+            checkFailure();
+            throw new IOException("Writer is closed");
+        }
+    }
+
+    /**
+     * Fails when the text raced with close() or a dying thread and is still
+     * queued after the last drain. Text the thread already took was
+     * written, or its failure is reported by flush() and close().
+     */
+    private void checkTaken(String text) throws IOException {
+        if (stopped && removeQueued(text)) {
+            checkFailure();
+            throw new IOException("Writer is closed");
+        }
+    }
+
+    /**
+     * Removes one queued occurrence of the text, by identity: an equal
+     * string may belong to another producer. Producers offering the same
+     * instance each take back one copy, so the number of failed offers
+     * still matches the copies that were not written.
+     */
+    private boolean removeQueued(String text) {
+        Iterator<Object> queued = queue.iterator();
+        while (queued.hasNext()) {
+            if (queued.next() == text) {
+                queued.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Asynchronous write failed", failure);
+        }
+    }
+}
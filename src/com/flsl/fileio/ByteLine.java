@@ -0,0 +1,134 @@
+package com.flsl.fileio;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable view over the bytes of one line.
+ * The view is only valid until the owning reader moves to the next line;
+ * call toString() (or getBytes()) to keep the content.
+ *
+ * As a CharSequence this is a byte view: length() counts bytes and
+ * charAt()/subSequence() map each byte to one char (Latin-1), which is
+ * exact for ASCII data and keeps byte offsets usable for searching.
+ * toString() and decode() decode UTF-8 instead, so for non-ASCII lines
+ * toString().length() differs from length(). Match text against
+ * toString(), not against the view itself.
+ */
+public class ByteLine implements CharSequence {
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+    private byte[] scratch = new byte[0];
+
+    // ----- VIEW CONTROL -----
+    void set(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    void setLength(int length) {
+        this.length = length;
+    }
+
+    // ----- BYTE ACCESS -----
+    public byte byteAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        return buffer.get(offset + index);
+    }
+
+    public int indexOf(byte b) {
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void copyTo(byte[] dest, int destOffset) {
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, dest, destOffset, length);
+            return;
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(dest, destOffset, length);
+    }
+
+    public byte[] getBytes() {
+        byte[] bytes = new byte[length];
+        copyTo(bytes, 0);
+        return bytes;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    // ----- CHARSEQUENCE -----
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (byteAt(index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            sb.append((char) (buffer.get(offset + i) & 0xFF));
+        }
+        return sb.toString();
+    }
+
+    // ----- DECODING -----
+    /**
+     * Decodes the line as UTF-8.
+     */
+    @Override
+    public String toString() {
+        return toString(StandardCharsets.UTF_8);
+    }
+
+    public String toString(Charset charset) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        copyTo(scratch, 0);
+        return FastCharsets.decode(scratch, 0, length, charset);
+    }
+
+    /**
+     * Decodes the bytes [start, end) of the line as UTF-8. Offsets found
+     * by searching for ASCII chars with charAt() are safe to use here.
+     */
+    public String decode(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end);
+        }
+        int count = end - start;
+        if (scratch.length < count) {
+            scratch = new byte[Math.max(count, scratch.length * 2)];
+        }
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + offset + start, scratch, 0, count);
+        } else {
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + start);
+            view.get(scratch, 0, count);
+        }
+        return FastCharsets.decode(scratch, 0, count, StandardCharsets.UTF_8);
+    }
+}
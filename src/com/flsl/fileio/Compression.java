@@ -0,0 +1,26 @@
+package com.flsl.fileio;
+
+import java.util.Locale;
+
+/**
+ * Compression applied by Reader and Writer.
+ * AUTO picks gzip for paths ending in ".gz" and plain text otherwise.
+ *
+ * AUTO is the default, also for the static Reader helpers (lines,
+ * processChunks). This changes existing code on ".gz" paths: Reader
+ * decompresses them and Writer compresses what it writes, where both
+ * used to pass the bytes through unchanged. Set NONE to keep the raw
+ * bytes.
+ */
+public enum Compression {
+    AUTO,
+    NONE,
+    GZIP;
+    
+    boolean appliesTo(String path) {
+        if (this == AUTO) {
+            return path.toLowerCase(Locale.ROOT).endsWith(".gz");
+        }
+        return this == GZIP;
+    }
+}
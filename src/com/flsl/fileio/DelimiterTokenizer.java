@@ -0,0 +1,274 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming tokenizer that splits a character stream on one or more
+ * delimiters. Delimiters are matched with an Aho-Corasick automaton, so
+ * every char is looked at once no matter how long the tokens get.
+ * A token ends at the first delimiter that completes; when several
+ * complete on the same char the longest one is taken.
+ * Tokens are handed out as a reusable CharSequence view; the view is
+ * overwritten by the next call, use nextToken() to get a String.
+ */
+public class DelimiterTokenizer implements Iterator<CharSequence> {
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final java.io.Reader source;
+    private final String[] delimiters;
+
+    // Automaton: alphabet of delimiter chars and a full transition table
+    private final char[] alphabet;
+    private final int[] asciiIndex = new int[128];
+    private final int[][] next;
+    private final int[] matchDelimiter; // longest delimiter ending in each state, or -1
+
+    private final char[] input = new char[BUFFER_SIZE];
+    private int inputPos;
+    private int inputLimit;
+    private boolean endOfStream;
+
+    private final Token token = new Token();
+    private int lastDelimiter = -1;
+    private boolean hasPending;
+    private boolean finished;
+
+    public DelimiterTokenizer(java.io.Reader source, String... delimiters) {
+        if (delimiters == null || delimiters.length == 0) {
+            throw new IllegalArgumentException("At least one delimiter is required");
+        }
+        for (String delimiter : delimiters) {
+            if (delimiter == null || delimiter.isEmpty()) {
+                throw new IllegalArgumentException("Delimiters must not be empty");
+            }
+        }
+        this.source = source;
+        this.delimiters = delimiters.clone();
+
+        // Alphabet
+        StringBuilder chars = new StringBuilder();
+        for (String delimiter : delimiters) {
+            chars.append(delimiter);
+        }
+        char[] all = chars.toString().toCharArray();
+        Arrays.sort(all);
+        int distinct = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (i == 0 || all[i] != all[i - 1]) {
+                all[distinct++] = all[i];
+            }
+        }
+        this.alphabet = Arrays.copyOf(all, distinct);
+        Arrays.fill(asciiIndex, -1);
+        for (int i = 0; i < alphabet.length; i++) {
+            if (alphabet[i] < 128) {
+                asciiIndex[alphabet[i]] = i;
+            }
+        }
+
+        // Trie
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(newRow());
+        terminal.add(-1);
+        for (int d = 0; d < delimiters.length; d++) {
+            int state = 0;
+            for (char c : delimiters[d].toCharArray()) {
+                int symbol = symbolOf(c);
+                if (trie.get(state)[symbol] == 0) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(newRow());
+                    terminal.add(-1);
+                }
+                state = trie.get(state)[symbol];
+            }
+            if (terminal.get(state) == -1) {
+                terminal.set(state, d);
+            }
+        }
+
+        // Failure links folded into a full transition table (breadth first)
+        int states = trie.size();
+        this.next = trie.toArray(new int[states][]);
+        this.matchDelimiter = new int[states];
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        matchDelimiter[0] = -1;
+        for (int symbol = 0; symbol < alphabet.length; symbol++) {
+            int child = next[0][symbol];
+            if (child != 0) {
+                fail[child] = 0;
+                queue[tail++] = child;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            int own = terminal.get(state);
+            matchDelimiter[state] = own != -1 ? own : matchDelimiter[fail[state]];
+            for (int symbol = 0; symbol < alphabet.length; symbol++) {
+                int child = next[state][symbol];
+                if (child != 0) {
+                    fail[child] = next[fail[state]][symbol];
+                    queue[tail++] = child;
+                } else {
+                    next[state][symbol] = next[fail[state]][symbol];
+                }
+            }
+        }
+    }
+
+    // ----- TOKEN ACCESS -----
+    /**
+     * Returns a view of the next token, or null when the stream is exhausted.
+     * Empty tokens between adjacent delimiters are returned; a trailing
+     * empty token after the last delimiter is not.
+     */
+    public CharSequence nextView() throws IOException {
+        if (hasPending) {
+            hasPending = false;
+            return token;
+        }
+        return advance() ? token : null;
+    }
+
+    public String nextToken() throws IOException {
+        CharSequence view = nextView();
+        return view != null ? view.toString() : null;
+    }
+
+    /**
+     * Index of the delimiter that ended the last token, or -1 when the
+     * token was ended by the end of the stream.
+     */
+    public int getLastDelimiter() {
+        return lastDelimiter;
+    }
+
+    public String getDelimiter(int index) {
+        return delimiters[index];
+    }
+
+    // ----- ITERATOR -----
+    @Override
+    public boolean hasNext() {
+        if (hasPending) {
+            return true;
+        }
+        try {
+            hasPending = advance();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return hasPending;
+    }
+
+    @Override
+    public CharSequence next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        hasPending = false;
+        return token;
+    }
+
+    // ----- PRIVATE HELPER -----
+    private boolean advance() throws IOException {
+        if (finished) {
+            return false;
+        }
+        token.length = 0;
+        int state = 0;
+        while (true) {
+            if (inputPos == inputLimit && !fill()) {
+                finished = true;
+                lastDelimiter = -1;
+                return token.length > 0;
+            }
+            char c = input[inputPos++];
+            token.append(c);
+
+            int symbol = symbolOf(c);
+            state = symbol < 0 ? 0 : next[state][symbol];
+            int match = matchDelimiter[state];
+            if (match != -1) {
+                token.length -= delimiters[match].length();
+                lastDelimiter = match;
+                return true;
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (endOfStream) {
+            return false;
+        }
+        int read;
+        do {
+            read = source.read(input, 0, input.length);
+        } while (read == 0);
+        if (read < 0) {
+            endOfStream = true;
+            return false;
+        }
+        inputPos = 0;
+        inputLimit = read;
+        return true;
+    }
+
+    private int symbolOf(char c) {
+        return c < 128 ? asciiIndex[c] : Arrays.binarySearch(alphabet, c);
+    }
+
+    private int[] newRow() {
+        return new int[alphabet.length];
+    }
+
+    /**
+     * Reusable token buffer.
+     */
+    private static final class Token implements CharSequence {
+        private char[] chars = new char[256];
+        private int length;
+
+        void append(char c) {
+            if (length == chars.length) {
+                chars = Arrays.copyOf(chars, length * 2);
+            }
+            chars[length++] = c;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+            }
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("start: " + start + ", end: " + end);
+            }
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
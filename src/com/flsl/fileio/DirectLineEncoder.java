@@ -0,0 +1,131 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Encodes lines straight into pooled direct ByteBuffers and hands them to
+ * the channel with gathering writes. Skips the char[] to byte[] copy of
+ * OutputStreamWriter and issues one syscall per group of buffers instead
+ * of one per small buffer. Handles UTF-8, US-ASCII and ISO-8859-1; pure
+ * ASCII text takes a one-byte-per-char fast path.
+ */
+class DirectLineEncoder {
+    private static final int BUFFERS_PER_WRITE = 16;
+
+    private DirectLineEncoder() {
+    }
+
+    static boolean supports(Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset)
+            || StandardCharsets.US_ASCII.equals(charset)
+            || StandardCharsets.ISO_8859_1.equals(charset);
+    }
+
+    /**
+     * Writes every line followed by the separator. Returns the byte count.
+     * Unencodable chars become '?', like the JDK encoders do.
+     */
+    static long writeLines(FileChannel channel, List<String> lines, String separator,
+                           Charset charset, BufferPool pool) throws IOException {
+        int maxChar = StandardCharsets.UTF_8.equals(charset) ? Character.MAX_VALUE
+                    : StandardCharsets.ISO_8859_1.equals(charset) ? 0xFF : 0x7F;
+        boolean utf8 = maxChar == Character.MAX_VALUE;
+
+        ByteBuffer[] batch = new ByteBuffer[BUFFERS_PER_WRITE];
+        int batchSize = 0;
+        long written = 0;
+        ByteBuffer buffer = pool.acquire();
+        try {
+            for (String line : lines) {
+                for (int part = 0; part < 2; part++) {
+                    String text = part == 0 ? line : separator;
+                    int length = text.length();
+                    int i = 0;
+                    while (i < length) {
+                        if (buffer.remaining() < 4) {
+                            batch[batchSize++] = buffer;
+                            buffer = null;
+                            if (batchSize == batch.length) {
+                                written += flush(channel, batch, batchSize, pool);
+                                batchSize = 0;
+                            }
+                            buffer = pool.acquire();
+                        }
+
+                        // ASCII run: one byte per char
+                        int limit = Math.min(length, i + buffer.remaining() - 3);
+                        while (i < limit) {
+                            char c = text.charAt(i);
+                            if (c >= 0x80) {
+                                break;
+                            }
+                            buffer.put((byte) c);
+                            i++;
+                        }
+                        if (i >= length || i >= limit) {
+                            continue;
+                        }
+
+                        char c = text.charAt(i++);
+                        if (!utf8) {
+                            if (Character.isHighSurrogate(c) && i < length
+                                    && Character.isLowSurrogate(text.charAt(i))) {
+                                i++;
+                            }
+                            buffer.put(c <= maxChar ? (byte) c : (byte) '?');
+                        } else if (c < 0x800) {
+                            buffer.put((byte) (0xC0 | (c >> 6)));
+                            buffer.put((byte) (0x80 | (c & 0x3F)));
+                        } else if (Character.isHighSurrogate(c) && i < length
+                                   && Character.isLowSurrogate(text.charAt(i))) {
+                            int cp = Character.toCodePoint(c, text.charAt(i++));
+                            buffer.put((byte) (0xF0 | (cp >> 18)));
+                            buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                            buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                            buffer.put((byte) (0x80 | (cp & 0x3F)));
+                        } else if (Character.isSurrogate(c)) {
+                            buffer.put((byte) '?');
+                        } else {
+                            buffer.put((byte) (0xE0 | (c >> 12)));
+                            buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                            buffer.put((byte) (0x80 | (c & 0x3F)));
+                        }
+                    }
+                }
+            }
+            batch[batchSize++] = buffer;
+            buffer = null;
+            written += flush(channel, batch, batchSize, pool);
+            batchSize = 0;
+        } finally {
+            for (int i = 0; i < batchSize; i++) {
+                pool.release(batch[i]);
+            }
+            pool.release(buffer);
+        }
+        return written;
+    }
+
+    private static long flush(FileChannel channel, ByteBuffer[] batch, int count,
+                              BufferPool pool) throws IOException {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            batch[i].flip();
+            total += batch[i].remaining();
+        }
+        long remaining = total;
+        while (remaining > 0) {
+            remaining -= channel.write(batch, 0, count);
+        }
+        for (int i = 0; i < count; i++) {
+            pool.release(batch[i]);
+            batch[i] = null;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,383 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sorts line files that do not fit in memory.
+ * The input is cut into runs that fit the memory budget; runs are sorted
+ * and written to temporary files on a worker pool while the next run is
+ * read. The runs are then k-way merged through a heap of run readers, in
+ * several passes when there are more runs than the merge fan-in allows.
+ * Input and output go through Reader and Writer, so ".gz" paths are
+ * decompressed and compressed transparently.
+ */
+public class ExternalSorter {
+    private static final int OUTPUT_BATCH = 4096;
+    
+    private long memoryBudget = 256L * 1024 * 1024;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int maxFanIn = 64;
+    private Comparator<String> comparator = Comparator.naturalOrder();
+    private boolean unique = false;
+    private Charset charset = StandardCharsets.UTF_8;
+    private Path tempDirectory;
+    
+    // ----- SORT -----
+    public Result sort(String inputPath, String outputPath) throws IOException {
+        return sort(Paths.get(inputPath), Paths.get(outputPath));
+    }
+    
+    /**
+     * Sorts the lines of input into output. Input and output may be the
+     * same file.
+     */
+    public Result sort(Path input, Path output) throws IOException {
+        Path tempDir = tempDirectory != null ? tempDirectory
+                     : output.toAbsolutePath().getParent();
+        Result result = new Result();
+        List<Path> runs = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, daemonThreads());
+        try {
+            createRuns(input, tempDir, runs, pool, result);
+            while (runs.size() > maxFanIn) {
+                runs = mergePass(runs, tempDir, pool);
+                result.mergePasses++;
+            }
+            result.linesWritten = merge(runs, output);
+            result.mergePasses++;
+        } finally {
+            pool.shutdownNow();
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+        return result;
+    }
+    
+    // ----- GETTER/SETTER -----
+    /**
+     * Approximate heap, in bytes, used for buffered lines across all runs
+     * being read or sorted at once.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 1024 * 1024) {
+            throw new IllegalArgumentException("Memory budget must be at least 1MB: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+    }
+    
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+    
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+    
+    public int getParallelism() {
+        return parallelism;
+    }
+    
+    /**
+     * Most runs merged at once; more runs are merged in several passes.
+     */
+    public void setMaxFanIn(int maxFanIn) {
+        if (maxFanIn < 2) {
+            throw new IllegalArgumentException("Fan-in must be at least 2: " + maxFanIn);
+        }
+        this.maxFanIn = maxFanIn;
+    }
+    
+    public int getMaxFanIn() {
+        return maxFanIn;
+    }
+    
+    /**
+     * Line order; null restores natural String order.
+     */
+    public void setComparator(Comparator<String> comparator) {
+        this.comparator = comparator != null ? comparator : Comparator.<String>naturalOrder();
+    }
+    
+    /**
+     * Keeps only the first of lines the comparator considers equal.
+     */
+    public void setUnique(boolean unique) {
+        this.unique = unique;
+    }
+    
+    public boolean isUnique() {
+        return unique;
+    }
+    
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+    
+    /**
+     * Where runs are written; defaults to the output file's directory.
+     */
+    public void setTempDirectory(Path tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+    
+    // ----- RESULT -----
+    public static class Result {
+        private long linesRead;
+        private long linesWritten;
+        private int runs;
+        private int mergePasses;
+        
+        public long getLinesRead() {
+            return linesRead;
+        }
+        
+        public long getLinesWritten() {
+            return linesWritten;
+        }
+        
+        public int getRuns() {
+            return runs;
+        }
+        
+        public int getMergePasses() {
+            return mergePasses;
+        }
+    }
+    
+    // ----- PRIVATE HELPER -----
+    private void createRuns(Path input, Path tempDir, List<Path> runs, ExecutorService pool,
+                            Result result) throws IOException {
+        // One run is being filled while up to parallelism runs are sorted
+        long runBudget = Math.max(64 * 1024, memoryBudget / (parallelism + 1));
+        Semaphore inFlight = new Semaphore(parallelism);
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        
+        try (Reader reader = new Reader(input.toString(), charset)) {
+            List<String> lines = new ArrayList<>();
+            long used = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+                result.linesRead++;
+                used += estimateSize(line);
+                if (used >= runBudget) {
+                    pending.add(submitRun(lines, tempDir, runs, pool, inFlight));
+                    lines = new ArrayList<>();
+                    used = 0;
+                }
+            }
+            if (!lines.isEmpty()) {
+                pending.add(submitRun(lines, tempDir, runs, pool, inFlight));
+            }
+        } finally {
+            // Wait for every run, even after a failure, before runs are deleted
+            join(CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])));
+        }
+        result.runs = runs.size();
+    }
+    
+    private CompletableFuture<Void> submitRun(List<String> lines, Path tempDir, List<Path> runs,
+                                              ExecutorService pool, Semaphore inFlight)
+            throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a sort worker", e);
+        }
+        Path run;
+        try {
+            run = Files.createTempFile(tempDir, "flsl-sort-", ".run");
+        } catch (IOException e) {
+            inFlight.release();
+            throw e;
+        }
+        runs.add(run);
+        return CompletableFuture.runAsync(() -> {
+            try {
+                lines.sort(comparator);
+                writeLines(run, unique ? dedupe(lines) : lines);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                inFlight.release();
+            }
+        }, pool);
+    }
+    
+    /**
+     * Merges groups of maxFanIn runs into new runs, in parallel.
+     */
+    private List<Path> mergePass(List<Path> runs, Path tempDir, ExecutorService pool)
+            throws IOException {
+        List<Path> merged = new ArrayList<>();
+        List<CompletableFuture<Long>> pending = new ArrayList<>();
+        try {
+            for (int i = 0; i < runs.size(); i += maxFanIn) {
+                List<Path> group = runs.subList(i, Math.min(runs.size(), i + maxFanIn));
+                Path target = Files.createTempFile(tempDir, "flsl-sort-", ".run");
+                merged.add(target);
+                pending.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return merge(group, target);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, pool));
+            }
+            join(CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])));
+        } catch (IOException | RuntimeException e) {
+            for (Path path : merged) {
+                Files.deleteIfExists(path);
+            }
+            throw e;
+        }
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        return merged;
+    }
+    
+    /**
+     * K-way merge of sorted runs. Returns the number of lines written.
+     */
+    private long merge(List<Path> runs, Path output) throws IOException {
+        PriorityQueue<RunCursor> heap = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+            int order = comparator.compare(a.line, b.line);
+            return order != 0 ? order : Integer.compare(a.index, b.index);
+        });
+        List<Reader> readers = new ArrayList<>();
+        Writer writer = new Writer(output.toString(), false, charset);
+        long written = 0;
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                Reader reader = new Reader(runs.get(i).toString(), charset);
+                reader.setCompression(Compression.NONE);
+                readers.add(reader);
+                RunCursor cursor = new RunCursor(reader, i);
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+            
+            writer.open();
+            List<String> batch = new ArrayList<>(OUTPUT_BATCH);
+            String last = null;
+            while (!heap.isEmpty()) {
+                RunCursor cursor = heap.poll();
+                String line = cursor.line;
+                if (!unique || last == null || comparator.compare(last, line) != 0) {
+                    batch.add(line);
+                    last = line;
+                    if (batch.size() == OUTPUT_BATCH) {
+                        writer.writeLines(batch);
+                        written += batch.size();
+                        batch.clear();
+                    }
+                }
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+            writer.writeLines(batch);
+            written += batch.size();
+        } finally {
+            try {
+                writer.close();
+            } finally {
+                for (Reader reader : readers) {
+                    reader.close();
+                }
+            }
+        }
+        return written;
+    }
+    
+    private void writeLines(Path run, List<String> lines) throws IOException {
+        Writer writer = new Writer(run.toString(), false, charset);
+        writer.setCompression(Compression.NONE);
+        writer.writeAllLines(lines);
+    }
+    
+    private List<String> dedupe(List<String> sorted) {
+        List<String> distinct = new ArrayList<>(sorted.size());
+        String last = null;
+        for (String line : sorted) {
+            if (last == null || comparator.compare(last, line) != 0) {
+                distinct.add(line);
+                last = line;
+            }
+        }
+        return distinct;
+    }
+    
+    /**
+     * Rough heap cost of a line: String and char[] headers, the chars,
+     * and the list slot.
+     */
+    private static long estimateSize(String line) {
+        return 48 + 2L * line.length();
+    }
+    
+    private static void join(CompletableFuture<?> future) throws IOException {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, "flsl-sort-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /** Current line of one run during the merge. */
+    private static final class RunCursor {
+        final Reader reader;
+        final int index;
+        String line;
+        
+        RunCursor(Reader reader, int index) {
+            this.reader = reader;
+            this.index = index;
+        }
+        
+        boolean advance() throws IOException {
+            line = reader.readLine();
+            return line != null;
+        }
+    }
+}
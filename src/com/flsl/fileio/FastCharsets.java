@@ -0,0 +1,369 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Specialized decoders and encoders for US-ASCII, ISO-8859-1 and UTF-8.
+ * ASCII runs are copied with one cast per byte instead of going through
+ * the general CharsetDecoder/CharsetEncoder machinery; other charsets
+ * fall back to InputStreamReader/OutputStreamWriter.
+ */
+class FastCharsets {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private static final int ASCII = 0;
+    private static final int LATIN1 = 1;
+    private static final int UTF8 = 2;
+
+    private FastCharsets() {
+    }
+
+    static boolean isFast(Charset charset) {
+        return kindOf(charset) >= 0;
+    }
+
+    static java.io.Reader newReader(InputStream in, Charset charset) {
+        int kind = kindOf(charset);
+        return kind >= 0 ? new FastReader(in, kind) : new InputStreamReader(in, charset);
+    }
+
+    static java.io.Writer newWriter(OutputStream out, Charset charset) {
+        int kind = kindOf(charset);
+        return kind >= 0 ? new FastWriter(out, kind) : new OutputStreamWriter(out, charset);
+    }
+
+    /**
+     * Decodes bytes, skipping the decoder entirely for pure ASCII data.
+     */
+    static String decode(byte[] bytes, int offset, int length, Charset charset) {
+        if (kindOf(charset) >= 0 && isAscii(bytes, offset, length)) {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+        return new String(bytes, offset, length, charset);
+    }
+
+    static boolean isAscii(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int kindOf(Charset charset) {
+        if (StandardCharsets.UTF_8.equals(charset)) return UTF8;
+        if (StandardCharsets.US_ASCII.equals(charset)) return ASCII;
+        if (StandardCharsets.ISO_8859_1.equals(charset)) return LATIN1;
+        return -1;
+    }
+
+    // ----- DECODING -----
+    private static final class FastReader extends java.io.Reader {
+        private final InputStream in;
+        private final int kind;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int pos;
+        private int limit;
+        private boolean eof;
+        private char pendingLow; // second half of a surrogate pair that did not fit
+
+        FastReader(InputStream in, int kind) {
+            this.in = in;
+            this.kind = kind;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n = off;
+            int end = off + len;
+            if (pendingLow != 0) {
+                cbuf[n++] = pendingLow;
+                pendingLow = 0;
+            }
+
+            while (n < end) {
+                if (pos >= limit) {
+                    if (n > off || !fill()) {
+                        break; // hand out what we have before reading again
+                    }
+                    continue;
+                }
+
+                // ASCII run
+                int run = Math.min(end - n, limit - pos);
+                int i = 0;
+                while (i < run && buf[pos + i] >= 0) {
+                    cbuf[n + i] = (char) buf[pos + i];
+                    i++;
+                }
+                pos += i;
+                n += i;
+                if (n >= end || pos >= limit) {
+                    continue;
+                }
+
+                if (kind == LATIN1) {
+                    cbuf[n++] = (char) (buf[pos++] & 0xFF);
+                } else if (kind == ASCII) {
+                    pos++;
+                    cbuf[n++] = REPLACEMENT;
+                } else if (pos + sequenceLength(buf[pos] & 0xFF) > limit) {
+                    // Sequence continues past the buffered bytes
+                    if (eof) {
+                        pos += truncatedLength();
+                        cbuf[n++] = REPLACEMENT;
+                    } else if (n > off) {
+                        break;
+                    } else {
+                        fill();
+                    }
+                } else {
+                    n = decodeUtf8(cbuf, n, end);
+                }
+            }
+            return n == off ? -1 : n - off;
+        }
+
+        private static int sequenceLength(int b0) {
+            if (b0 >= 0xC2 && b0 <= 0xDF) return 2;
+            if (b0 >= 0xE0 && b0 <= 0xEF) return 3;
+            if (b0 >= 0xF0 && b0 <= 0xF4) return 4;
+            return 1;
+        }
+
+        /**
+         * Decodes one fully buffered non-ASCII UTF-8 sequence at pos.
+         * Malformed input is replaced per maximal invalid subpart, the way
+         * the JDK decoder does it.
+         */
+        private int decodeUtf8(char[] cbuf, int n, int end) {
+            int b0 = buf[pos] & 0xFF;
+            int length = sequenceLength(b0);
+            if (length == 1) {
+                pos++;
+                cbuf[n++] = REPLACEMENT;
+                return n;
+            }
+
+            int b1 = buf[pos + 1] & 0xFF;
+            if (!inSecondByteRange(b0, b1)) {
+                pos++;
+                cbuf[n++] = REPLACEMENT;
+                return n;
+            }
+
+            int cp = (b0 & (0xFF >> (length + 1))) << 6 | (b1 & 0x3F);
+            for (int k = 2; k < length; k++) {
+                int b = buf[pos + k] & 0xFF;
+                if ((b & 0xC0) != 0x80) {
+                    pos += k;
+                    cbuf[n++] = REPLACEMENT;
+                    return n;
+                }
+                cp = (cp << 6) | (b & 0x3F);
+            }
+
+            pos += length;
+            if (Character.isSurrogate((char) cp) && cp < 0x10000) {
+                // Encoded surrogates are malformed as a whole sequence
+                cbuf[n++] = REPLACEMENT;
+            } else if (cp < 0x10000) {
+                cbuf[n++] = (char) cp;
+            } else {
+                cbuf[n++] = Character.highSurrogate(cp);
+                if (n < end) {
+                    cbuf[n++] = Character.lowSurrogate(cp);
+                } else {
+                    pendingLow = Character.lowSurrogate(cp);
+                }
+            }
+            return n;
+        }
+
+        /**
+         * Bytes of the valid prefix of a sequence cut off by the end of input.
+         */
+        private int truncatedLength() {
+            int b0 = buf[pos] & 0xFF;
+            int available = limit - pos;
+            if (available < 2 || !inSecondByteRange(b0, buf[pos + 1] & 0xFF)) {
+                return 1;
+            }
+            if (available < 3 || (buf[pos + 2] & 0xC0) != 0x80) {
+                return 2;
+            }
+            return 3;
+        }
+
+        private static boolean inSecondByteRange(int b0, int b1) {
+            int low = b0 == 0xE0 ? 0xA0 : b0 == 0xF0 ? 0x90 : 0x80;
+            int high = b0 == 0xF4 ? 0x8F : 0xBF;
+            return b1 >= low && b1 <= high;
+        }
+
+        private boolean fill() throws IOException {
+            if (eof) {
+                return false;
+            }
+            int remaining = limit - pos;
+            System.arraycopy(buf, pos, buf, 0, remaining);
+            pos = 0;
+            limit = remaining;
+            int read = in.read(buf, limit, buf.length - limit);
+            if (read < 0) {
+                eof = true;
+                return false;
+            }
+            limit += read;
+            return true;
+        }
+
+        @Override
+        public boolean ready() throws IOException {
+            return pendingLow != 0 || pos < limit || in.available() > 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // ----- ENCODING -----
+    private static final class FastWriter extends java.io.Writer {
+        private final OutputStream out;
+        private final int kind;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int pos;
+        private char pendingHigh;
+        private final char[] chunk = new char[1024];
+
+        FastWriter(OutputStream out, int kind) {
+            this.out = out;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int end = off + len;
+            int i = off;
+            while (i < end) {
+                if (buf.length - pos < 4) {
+                    flushBuffer();
+                }
+
+                // ASCII run
+                int run = Math.min(end - i, buf.length - pos - 3);
+                int k = 0;
+                if (pendingHigh == 0) {
+                    while (k < run && cbuf[i + k] < 0x80) {
+                        buf[pos + k] = (byte) cbuf[i + k];
+                        k++;
+                    }
+                }
+                i += k;
+                pos += k;
+                if (i >= end || k == run) {
+                    continue;
+                }
+
+                char c = cbuf[i++];
+                if (pendingHigh != 0) {
+                    char high = pendingHigh;
+                    pendingHigh = 0;
+                    if (Character.isLowSurrogate(c)) {
+                        encodeCodePoint(Character.toCodePoint(high, c));
+                        continue;
+                    }
+                    buf[pos++] = '?';
+                }
+                if (Character.isHighSurrogate(c)) {
+                    if (i < end) {
+                        char low = cbuf[i];
+                        if (Character.isLowSurrogate(low)) {
+                            i++;
+                            encodeCodePoint(Character.toCodePoint(c, low));
+                        } else {
+                            buf[pos++] = '?';
+                        }
+                    } else {
+                        pendingHigh = c;
+                    }
+                } else if (Character.isLowSurrogate(c)) {
+                    buf[pos++] = '?';
+                } else {
+                    encodeCodePoint(c);
+                }
+            }
+        }
+
+        private void encodeCodePoint(int cp) {
+            if (kind == ASCII) {
+                buf[pos++] = cp < 0x80 ? (byte) cp : (byte) '?';
+            } else if (kind == LATIN1) {
+                buf[pos++] = cp <= 0xFF ? (byte) cp : (byte) '?';
+            } else if (cp < 0x80) {
+                buf[pos++] = (byte) cp;
+            } else if (cp < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (cp >> 6));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (cp < 0x10000) {
+                buf[pos++] = (byte) (0xE0 | (cp >> 12));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            // Copy through a small chunk so no char[] of the full string is made
+            int done = 0;
+            while (done < len) {
+                int n = Math.min(chunk.length, len - done);
+                str.getChars(off + done, off + done + n, chunk, 0);
+                write(chunk, 0, n);
+                done += n;
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            if (pos > 0) {
+                out.write(buf, 0, pos);
+                pos = 0;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (pendingHigh != 0) {
+                pendingHigh = 0;
+                buf[pos++] = '?';
+            }
+            flushBuffer();
+            out.close();
+        }
+    }
+}
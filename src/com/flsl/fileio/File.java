@@ -1,16 +1,30 @@
 package com.flsl.fileio;
 
 import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Enhanced file wrapper with utility methods
  */
 public class File {
     private Path path;
+    private FileSnapshot snapshot;
+    private long attributeTtlMillis = 0;
     
     public File(String path) {
         this.path = Paths.get(path);
@@ -18,17 +32,105 @@ public class File {
     
     // ----- FILE PROPERTIES -----
     public boolean exists() {
+        if (attributeTtlMillis > 0) {
+            try {
+                return attributes().exists();
+            } catch (IOException e) {
+                return false;
+            }
+        }
         return Files.exists(path);
     }
     
     public boolean isDirectory() {
+        if (attributeTtlMillis > 0) {
+            try {
+                return attributes().isDirectory();
+            } catch (IOException e) {
+                return false;
+            }
+        }
         return Files.isDirectory(path);
     }
     
     public long size() throws IOException {
+        if (attributeTtlMillis > 0) {
+            FileSnapshot current = attributes();
+            if (!current.exists()) {
+                throw new NoSuchFileException(path.toString());
+            }
+            return current.size();
+        }
         return Files.size(path);
     }
     
+    // ----- ATTRIBUTE SNAPSHOT -----
+    /**
+     * Returns the cached attribute snapshot while it is younger than the
+     * TTL, otherwise fetches a new one with a single stat call.
+     */
+    public FileSnapshot attributes() throws IOException {
+        FileSnapshot current = snapshot;
+        if (current != null && current.isFresh(attributeTtlMillis)) {
+            return current;
+        }
+        return refresh();
+    }
+    
+    public FileSnapshot refresh() throws IOException {
+        snapshot = stat(path);
+        return snapshot;
+    }
+    
+    /**
+     * With a TTL above zero, exists(), isDirectory() and size() are answered
+     * from the snapshot. Zero (the default) stats on every call.
+     */
+    public void setAttributeTtl(long ttlMillis) {
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("TTL must not be negative: " + ttlMillis);
+        }
+        this.attributeTtlMillis = ttlMillis;
+    }
+    
+    public long getAttributeTtl() {
+        return attributeTtlMillis;
+    }
+    
+    /**
+     * Snapshots every entry of a directory in one walk, keyed by file name.
+     */
+    public static Map<String, FileSnapshot> statDirectory(String dirPath) throws IOException {
+        Path dir = Paths.get(dirPath);
+        Map<String, FileSnapshot> entries = new TreeMap<>();
+        Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                entries.put(file.getFileName().toString(), new FileSnapshot(file, attrs));
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                if (file.equals(dir)) {
+                    throw exc;
+                }
+                // Entry vanished or cannot be read; report it as missing
+                entries.put(file.getFileName().toString(), new FileSnapshot(file, null));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return entries;
+    }
+    
+    private static FileSnapshot stat(Path path) throws IOException {
+        try {
+            return new FileSnapshot(path, Files.readAttributes(path, BasicFileAttributes.class));
+        } catch (NoSuchFileException e) {
+            return new FileSnapshot(path, null);
+        }
+    }
+    
     public String getName() {
         return path.getFileName().toString();
     }
@@ -46,28 +148,70 @@ public class File {
     public boolean create() throws IOException {
         if (!exists()) {
             Files.createFile(path);
+            snapshot = null;
             return true;
         }
         return false;
     }
     
     public boolean delete() throws IOException {
+        snapshot = null;
         return Files.deleteIfExists(path);
     }
     
     public boolean moveTo(String newPath) throws IOException {
         Path dest = Paths.get(newPath);
-        Files.move(path, dest);
+        if (isDirectory()) {
+            treeCopier(dest).move(path, dest);
+        } else {
+            Files.move(path, dest);
+        }
         this.path = dest;  // NOW THIS WORKS!
+        snapshot = null;
+        return true;
+    }
+    
+    public boolean moveTo(String newPath, FileCopier copier) throws IOException {
+        Path dest = Paths.get(newPath);
+        copier.move(path, dest);
+        this.path = dest;
+        snapshot = null;
         return true;
     }
     
+    /**
+     * Copies the file (zero-copy via FileChannel.transferTo) or the whole
+     * directory tree. Like moveTo, it never writes over an existing target;
+     * pass a FileCopier to merge into or overwrite one.
+     */
     public boolean copyTo(String newPath) throws IOException {
         Path dest = Paths.get(newPath);
-        Files.copy(path, dest);
+        if (isDirectory()) {
+            treeCopier(dest).copy(path, dest);
+        } else {
+            FileCopier.copyFile(path, dest, false);
+        }
+        return true;
+    }
+    
+    public boolean copyTo(String newPath, FileCopier copier) throws IOException {
+        copier.copy(path, Paths.get(newPath));
         return true;
     }
     
+    /**
+     * Copier for the convenience methods: fails like Files.copy/move when
+     * the target exists instead of merging into it.
+     */
+    private static FileCopier treeCopier(Path dest) throws IOException {
+        if (Files.exists(dest, LinkOption.NOFOLLOW_LINKS)) {
+            throw new FileAlreadyExistsException(dest.toString());
+        }
+        FileCopier copier = new FileCopier();
+        copier.setOverwrite(false);
+        return copier;
+    }
+    
     // ----- QUICK ACCESS -----
     public byte[] readBytes() throws IOException {
         return Files.readAllBytes(path);
@@ -78,13 +222,44 @@ public class File {
     }
     
     public void writeBytes(byte[] data) throws IOException {
+        snapshot = null;
         Files.write(path, data);
     }
     
     public void writeLines(List<String> lines) throws IOException {
+        snapshot = null;
         Files.write(path, lines);
     }
     
+    // ----- ASYNC ACCESS -----
+    public CompletableFuture<byte[]> readBytesAsync() {
+        return AsyncFileIO.readBytes(path, null);
+    }
+    
+    public CompletableFuture<List<String>> readLinesAsync() {
+        return AsyncFileIO.readLines(path, null);
+    }
+    
+    public CompletableFuture<Void> writeBytesAsync(byte[] data) {
+        return AsyncFileIO.writeBytes(path, data, null).whenComplete((done, error) -> snapshot = null);
+    }
+    
+    public CompletableFuture<Void> writeLinesAsync(List<String> lines) {
+        return AsyncFileIO.writeLines(path, lines, null).whenComplete((done, error) -> snapshot = null);
+    }
+    
+    /**
+     * Reads many files concurrently, at most parallelism at a time.
+     * The result map keeps the order of the given paths.
+     */
+    public static CompletableFuture<Map<String, byte[]>> readAll(Collection<String> paths, int parallelism) {
+        return AsyncFileIO.readAll(paths, parallelism, null);
+    }
+    
+    public static CompletableFuture<Void> writeAll(Map<String, byte[]> files, int parallelism) {
+        return AsyncFileIO.writeAll(files, parallelism, null);
+    }
+    
     // ----- STATIC METHODS -----
     public static File fromPath(String path) {
         return new File(path);
@@ -105,5 +280,6 @@ public class File {
     
     public void setPath(String newPath) {
         this.path = Paths.get(newPath);
+        this.snapshot = null;
     }
 }
\ No newline at end of file
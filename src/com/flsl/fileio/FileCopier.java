@@ -0,0 +1,292 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copies and moves files or whole directory trees.
+ * File contents go through FileChannel.transferTo so the kernel can copy
+ * without passing the data through the Java heap. Tree copies run on a
+ * bounded worker pool; the walking thread runs a copy itself when the
+ * queue is full, so memory stays flat for very large trees.
+ */
+public class FileCopier {
+
+    /**
+     * Called from worker threads after each copied or skipped file.
+     */
+    public interface ProgressListener {
+        void onFile(Path source, Path target, long bytes, boolean skipped);
+    }
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private boolean skipUnchanged = false;
+    private boolean overwrite = true;
+    private ProgressListener progressListener;
+
+    // ----- COPY -----
+    /**
+     * Copies a file, or a directory tree into target (merging with
+     * existing directories).
+     */
+    public Result copy(Path source, Path target) throws IOException {
+        Result result = new Result();
+        if (Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS)) {
+            copyTree(source, target, result);
+        } else {
+            BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class);
+            copyOne(source, target, attrs, result);
+        }
+        return result;
+    }
+
+    /**
+     * Copies one regular file with FileChannel.transferTo.
+     * Fails with FileAlreadyExistsException when the target exists and
+     * overwrite is false.
+     */
+    public static long copyFile(Path source, Path target, boolean overwrite) throws IOException {
+        StandardOpenOption create = overwrite
+            ? StandardOpenOption.CREATE
+            : StandardOpenOption.CREATE_NEW;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, create,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long copied = in.transferTo(position, size - position, out);
+                if (copied <= 0) {
+                    throw new IOException("Copy of " + source + " stopped at byte " + position
+                                          + " of " + size + "; the file may have been truncated");
+                }
+                position += copied;
+            }
+            return position;
+        }
+    }
+
+    // ----- MOVE -----
+    /**
+     * Moves a file or directory tree. A plain rename is tried first; when
+     * that is not possible (directory on another filesystem, existing
+     * target directory) the tree is copied and the source deleted. Any
+     * other rename failure is thrown.
+     */
+    public Result move(Path source, Path target) throws IOException {
+        if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                Files.move(source, target);
+                Result result = new Result();
+                result.movedByRename = true;
+                return result;
+            } catch (DirectoryNotEmptyException | FileAlreadyExistsException e) {
+                // Directory on another filesystem, or the target appeared: copy + delete.
+                // Other failures (access denied, missing source) are real errors.
+            }
+        }
+
+        boolean previousSkip = skipUnchanged;
+        skipUnchanged = false;
+        Result result;
+        try {
+            result = copy(source, target);
+        } finally {
+            skipUnchanged = previousSkip;
+        }
+        deleteTree(source);
+        return result;
+    }
+
+    public static void deleteTree(Path root) throws IOException {
+        if (!Files.isDirectory(root, LinkOption.NOFOLLOW_LINKS)) {
+            Files.deleteIfExists(root);
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // ----- GETTER/SETTER -----
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Skips files whose target already has the same size and modification time.
+     */
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    public void setOverwrite(boolean overwrite) {
+        this.overwrite = overwrite;
+    }
+
+    public boolean isOverwrite() {
+        return overwrite;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    // ----- RESULT -----
+    public static class Result {
+        private final AtomicLong filesCopied = new AtomicLong();
+        private final AtomicLong filesSkipped = new AtomicLong();
+        private final AtomicLong bytesCopied = new AtomicLong();
+        private boolean movedByRename;
+
+        public long getFilesCopied() {
+            return filesCopied.get();
+        }
+
+        public long getFilesSkipped() {
+            return filesSkipped.get();
+        }
+
+        public long getBytesCopied() {
+            return bytesCopied.get();
+        }
+
+        public boolean isMovedByRename() {
+            return movedByRename;
+        }
+    }
+
+    // ----- PRIVATE HELPER -----
+    private void copyTree(Path source, Path target, Result result) throws IOException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+            parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(parallelism * 4),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        AtomicReference<IOException> failure = new AtomicReference<>();
+
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                        throws IOException {
+                    Files.createDirectories(target.resolve(source.relativize(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (failure.get() != null) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    Path dest = target.resolve(source.relativize(file));
+                    pool.execute(() -> {
+                        if (failure.get() != null) {
+                            return;
+                        }
+                        try {
+                            copyOne(file, dest, attrs, result);
+                        } catch (IOException e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    });
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } finally {
+            pool.shutdown();
+            try {
+                while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                    // Wait for queued copies
+                }
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while copying " + source, e);
+            }
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private void copyOne(Path source, Path target, BasicFileAttributes attrs,
+                         Result result) throws IOException {
+        if (skipUnchanged && isUnchanged(attrs, target)) {
+            result.filesSkipped.incrementAndGet();
+            notifyProgress(source, target, 0, true);
+            return;
+        }
+
+        long bytes;
+        if (attrs.isSymbolicLink() || !attrs.isRegularFile()) {
+            if (overwrite) {
+                Files.deleteIfExists(target);
+            }
+            Files.copy(source, target, LinkOption.NOFOLLOW_LINKS);
+            bytes = 0;
+        } else {
+            bytes = copyFile(source, target, overwrite);
+            Files.setLastModifiedTime(target, attrs.lastModifiedTime());
+        }
+
+        result.filesCopied.incrementAndGet();
+        result.bytesCopied.addAndGet(bytes);
+        notifyProgress(source, target, bytes, false);
+    }
+
+    private static boolean isUnchanged(BasicFileAttributes attrs, Path target) throws IOException {
+        if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            return false;
+        }
+        BasicFileAttributes existing = Files.readAttributes(target, BasicFileAttributes.class,
+                                                            LinkOption.NOFOLLOW_LINKS);
+        return existing.size() == attrs.size()
+            && existing.lastModifiedTime().toMillis() == attrs.lastModifiedTime().toMillis();
+    }
+
+    private void notifyProgress(Path source, Path target, long bytes, boolean skipped) {
+        ProgressListener listener = progressListener;
+        if (listener != null) {
+            listener.onFile(source, target, bytes, skipped);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows a growing file like "tail -f".
+ * Remembers the byte offset it has read up to and only reads what was
+ * appended since, delivering complete lines (a partial last line waits for
+ * its '\n'). Waits on WatchService events for the parent directory, with
+ * the poll interval as a fallback for filesystems that do not report
+ * changes. A truncated file is re-read from the start; a rotated file
+ * (same path, different file) is drained, including a last line without
+ * '\n', and then followed from the start of the new file.
+ */
+public class FileFollower implements AutoCloseable {
+
+    public interface LineCallback {
+        void onLine(String line) throws IOException;
+    }
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final Charset charset;
+    private long pollIntervalMillis = 1000;
+
+    // Closed by close(), possibly from another thread
+    private volatile FileChannel channel;
+    private Object fileId;
+    private long offset;
+    private boolean startAtEnd;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private byte[] partial = new byte[256];
+    private int partialLength;
+    private final ArrayDeque<String> pending = new ArrayDeque<>();
+
+    private WatchService watchService;
+    private boolean watchUnavailable;
+    private volatile boolean closed;
+
+    public FileFollower(Path path, Charset charset, boolean startAtEnd) {
+        this.path = path.toAbsolutePath();
+        this.charset = charset;
+        this.startAtEnd = startAtEnd;
+    }
+
+    // ----- READING METHODS -----
+    /**
+     * Returns the complete lines appended since the last call, without waiting.
+     */
+    public List<String> poll() throws IOException {
+        readAvailable();
+        List<String> lines = new ArrayList<>(pending);
+        pending.clear();
+        return lines;
+    }
+
+    /**
+     * Blocks until a new complete line is available. Returns null once the
+     * follower is closed, also when close() is called from another thread
+     * during a read.
+     */
+    public String nextLine() throws IOException, InterruptedException {
+        while (!closed) {
+            if (pending.isEmpty()) {
+                try {
+                    readAvailable();
+                } catch (ClosedChannelException e) {
+                    if (closed) {
+                        return null;
+                    }
+                    throw e;
+                }
+            }
+            if (!pending.isEmpty()) {
+                return pending.poll();
+            }
+            awaitChange();
+        }
+        return null;
+    }
+
+    /**
+     * Delivers lines to the callback until the follower is closed or the
+     * thread is interrupted.
+     */
+    public void follow(LineCallback callback) throws IOException, InterruptedException {
+        String line;
+        while ((line = nextLine()) != null) {
+            callback.onLine(line);
+        }
+    }
+
+    // ----- POSITION -----
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setPollInterval(long pollIntervalMillis) {
+        if (pollIntervalMillis < 1) {
+            throw new IllegalArgumentException("Poll interval must be positive: " + pollIntervalMillis);
+        }
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    // ----- OPEN/CLOSE -----
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } finally {
+            closeChannel();
+        }
+    }
+
+    // ----- PRIVATE HELPER -----
+    private void readAvailable() throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            // Rotation in progress: finish the old file, wait for the new one
+            FileChannel old = channel;
+            if (old != null) {
+                drain(old);
+            }
+            return;
+        }
+        Object currentId = attrs.fileKey() != null ? attrs.fileKey() : attrs.creationTime();
+
+        FileChannel current = channel;
+        if (current != null && !currentId.equals(fileId)) {
+            drain(current);
+            if (partialLength > 0) {
+                // The old file is finished; its last line will not get a '\n'
+                emit(partial, 0, partialLength);
+                partialLength = 0;
+            }
+            closeChannel();
+            current = null;
+            offset = 0;
+        }
+        if (current == null) {
+            if (closed) {
+                return;
+            }
+            current = FileChannel.open(path, StandardOpenOption.READ);
+            channel = current;
+            if (closed) {
+                // close() ran while the file was opened
+                closeChannel();
+                return;
+            }
+            fileId = currentId;
+            if (startAtEnd) {
+                offset = current.size();
+                startAtEnd = false;
+            }
+        }
+
+        if (current.size() < offset) {
+            // Truncated in place
+            offset = 0;
+            partialLength = 0;
+        }
+        drain(current);
+    }
+
+    private void drain(FileChannel current) throws IOException {
+        long size = current.size();
+        while (offset < size) {
+            buffer.clear();
+            int read = current.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            offset += read;
+            splitLines(read);
+        }
+    }
+
+    private void splitLines(int read) {
+        byte[] bytes = buffer.array();
+        int lineStart = 0;
+        for (int i = 0; i < read; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            if (partialLength > 0) {
+                appendPartial(bytes, lineStart, i);
+                emit(partial, 0, partialLength);
+                partialLength = 0;
+            } else {
+                emit(bytes, lineStart, i);
+            }
+            lineStart = i + 1;
+        }
+        if (lineStart < read) {
+            appendPartial(bytes, lineStart, read);
+        }
+    }
+
+    private void emit(byte[] bytes, int from, int to) {
+        if (to > from && bytes[to - 1] == '\r') {
+            to--;
+        }
+        pending.add(FastCharsets.decode(bytes, from, to - from, charset));
+    }
+
+    private void appendPartial(byte[] bytes, int from, int to) {
+        int count = to - from;
+        if (partialLength + count > partial.length) {
+            partial = Arrays.copyOf(partial, Math.max(partialLength + count, partial.length * 2));
+        }
+        System.arraycopy(bytes, from, partial, partialLength, count);
+        partialLength += count;
+    }
+
+    private void awaitChange() throws InterruptedException {
+        if (!watchUnavailable && watchService == null) {
+            WatchService service = null;
+            try {
+                service = path.getFileSystem().newWatchService();
+                path.getParent().register(service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+                // Only a registered service is kept; close() closes it
+                watchService = service;
+            } catch (IOException | UnsupportedOperationException e) {
+                watchUnavailable = true;
+                closeQuietly(service);
+            }
+        }
+
+        if (watchService == null) {
+            Thread.sleep(pollIntervalMillis);
+            return;
+        }
+        try {
+            WatchKey key = watchService.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                key.pollEvents();
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Closed while waiting
+        }
+    }
+
+    private static void closeQuietly(WatchService service) {
+        if (service == null) {
+            return;
+        }
+        try {
+            service.close();
+        } catch (IOException e) {
+            // Falling back to polling either way
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.flsl.fileio;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Attributes of a file captured by a single stat call.
+ * A snapshot of a missing file reports exists() == false.
+ */
+public class FileSnapshot {
+    private final Path path;
+    private final BasicFileAttributes attributes;
+    private final long capturedAt;
+    
+    FileSnapshot(Path path, BasicFileAttributes attributes) {
+        this.path = path;
+        this.attributes = attributes;
+        this.capturedAt = System.nanoTime();
+    }
+    
+    // ----- FILE PROPERTIES -----
+    public boolean exists() {
+        return attributes != null;
+    }
+    
+    public boolean isDirectory() {
+        return attributes != null && attributes.isDirectory();
+    }
+    
+    public boolean isRegularFile() {
+        return attributes != null && attributes.isRegularFile();
+    }
+    
+    public boolean isSymbolicLink() {
+        return attributes != null && attributes.isSymbolicLink();
+    }
+    
+    /**
+     * Size in bytes, or -1 when the file does not exist.
+     */
+    public long size() {
+        return attributes != null ? attributes.size() : -1;
+    }
+    
+    /**
+     * Modification time in epoch millis, or -1 when the file does not exist.
+     */
+    public long lastModified() {
+        return attributes != null ? attributes.lastModifiedTime().toMillis() : -1;
+    }
+    
+    /**
+     * The raw attributes, or null when the file does not exist.
+     */
+    public BasicFileAttributes getAttributes() {
+        return attributes;
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    // ----- AGE -----
+    public long getAgeMillis() {
+        return (System.nanoTime() - capturedAt) / 1_000_000;
+    }
+    
+    boolean isFresh(long ttlMillis) {
+        return System.nanoTime() - capturedAt < ttlMillis * 1_000_000;
+    }
+}
@@ -0,0 +1,82 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Splits a file into byte ranges that start and end on line boundaries.
+ */
+public class LineChunker {
+    private static final int PROBE_SIZE = 8 * 1024;
+
+    private LineChunker() {
+    }
+
+    /**
+     * Returns the chunk boundaries as offsets [b0, b1, ..., bn] where
+     * chunk i covers [b(i), b(i+1)). Every boundary except 0 and the file
+     * size sits right after a '\n'. Fewer chunks than requested are
+     * returned when lines are long or the file is small.
+     */
+    public static long[] split(Path path, int chunks) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return split(channel, 0, channel.size(), chunks);
+        }
+    }
+
+    static long[] split(FileChannel channel, long start, long end, int chunks) throws IOException {
+        if (chunks < 1) {
+            throw new IllegalArgumentException("Chunk count must be at least 1: " + chunks);
+        }
+
+        long[] bounds = new long[chunks + 1];
+        int count = 0;
+        bounds[count++] = start;
+
+        long length = end - start;
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        for (int i = 1; i < chunks; i++) {
+            long target = start + length * i / chunks;
+            long previous = bounds[count - 1];
+            if (target <= previous) {
+                continue;
+            }
+            long boundary = nextLineStart(channel, target, end, probe);
+            if (boundary > previous && boundary < end) {
+                bounds[count++] = boundary;
+            }
+        }
+        bounds[count++] = end;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Returns the offset right after the first '\n' at or after position - 1,
+     * so a position that already starts a line is kept as is.
+     */
+    static long nextLineStart(FileChannel channel, long position, long end,
+                              ByteBuffer probe) throws IOException {
+        long pos = position - 1;
+        while (pos < end) {
+            probe.clear();
+            if (end - pos < probe.capacity()) {
+                probe.limit((int) (end - pos));
+            }
+            int read = channel.read(probe, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,232 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * Byte offsets of every line start in a file.
+ * Built by scanning raw bytes for '\n' and persisted next to the file
+ * as a sidecar (file name + ".lidx"), which is only trusted while the
+ * file size and modification time still match.
+ */
+public class LineIndex {
+    public static final String SUFFIX = ".lidx";
+
+    private static final int MAGIC = 0x4C494458; // "LIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final long fileSize;
+    private final long lastModified;
+    private final long[] offsets; // line starts plus the file size as sentinel
+
+    private LineIndex(long fileSize, long lastModified, long[] offsets) {
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.offsets = offsets;
+    }
+
+    // ----- FACTORY METHODS -----
+    /**
+     * Loads the sidecar index if it is still valid, otherwise builds it
+     * and tries to save it. A sidecar that cannot be written (read-only
+     * directory, etc.) is not an error; the index is simply kept in memory.
+     */
+    public static LineIndex forFile(Path path) throws IOException {
+        LineIndex index = load(path);
+        if (index != null) {
+            return index;
+        }
+        index = build(path);
+        try {
+            index.save(path);
+        } catch (IOException e) {
+            // Keep the in-memory index
+        }
+        return index;
+    }
+
+    public static LineIndex forFile(String filePath) throws IOException {
+        return forFile(Paths.get(filePath));
+    }
+
+    /**
+     * Scans the file for line starts without decoding any characters.
+     */
+    public static LineIndex build(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            long size = channel.size();
+
+            long[] offsets = new long[1024];
+            int count = 0;
+            if (size > 0) {
+                offsets[count++] = 0;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(SCAN_BUFFER_SIZE);
+            long position = 0;
+            int read;
+            while (position < size && (read = channel.read(buffer, position)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        long next = position + i + 1;
+                        if (next < size) {
+                            if (count == offsets.length) {
+                                offsets = Arrays.copyOf(offsets, count * 2);
+                            }
+                            offsets[count++] = next;
+                        }
+                    }
+                }
+                position += read;
+                buffer.clear();
+            }
+
+            offsets = Arrays.copyOf(offsets, count + 1);
+            offsets[count] = size;
+            return new LineIndex(size, attrs.lastModifiedTime().toMillis(), offsets);
+        }
+    }
+
+    /**
+     * Reads the sidecar index, or returns null when it is missing,
+     * unreadable or out of date.
+     */
+    public static LineIndex load(Path path) throws IOException {
+        Path sidecar = sidecarOf(path);
+        if (!Files.exists(sidecar) || !Files.exists(path)) {
+            return null;
+        }
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // Fill the header
+            }
+            if (header.hasRemaining()) {
+                return null;
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            long size = header.getLong();
+            long modified = header.getLong();
+            long count = header.getLong();
+            if (size != attrs.size() || modified != attrs.lastModifiedTime().toMillis()
+                    || count < 0 || count >= Integer.MAX_VALUE
+                    || channel.size() != HEADER_SIZE + (count + 1) * 8) {
+                return null;
+            }
+
+            long[] offsets = new long[(int) count + 1];
+            ByteBuffer body = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            int filled = 0;
+            while (filled < offsets.length) {
+                body.clear();
+                int want = Math.min(body.capacity(), (offsets.length - filled) * 8);
+                body.limit(want);
+                while (body.hasRemaining()) {
+                    if (channel.read(body) < 0) {
+                        return null;
+                    }
+                }
+                body.flip();
+                while (body.hasRemaining()) {
+                    offsets[filled++] = body.getLong();
+                }
+            }
+            return new LineIndex(size, modified, offsets);
+        }
+    }
+
+    public void save(Path path) throws IOException {
+        Path sidecar = sidecarOf(path);
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION)
+                  .putLong(fileSize).putLong(lastModified).putLong(getLineCount());
+            for (long offset : offsets) {
+                if (buffer.remaining() < 8) {
+                    writeFully(channel, buffer);
+                }
+                buffer.putLong(offset);
+            }
+            writeFully(channel, buffer);
+        }
+    }
+
+    public static Path sidecarOf(Path path) {
+        return path.resolveSibling(path.getFileName().toString() + SUFFIX);
+    }
+
+    // ----- QUERIES -----
+    public long getLineCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Byte offset where the zero-based line starts.
+     */
+    public long getLineStart(long line) {
+        checkLine(line);
+        return offsets[(int) line];
+    }
+
+    /**
+     * Byte offset right after the line, including its terminator.
+     */
+    public long getLineEnd(long line) {
+        checkLine(line);
+        return offsets[(int) line + 1];
+    }
+
+    /**
+     * Zero-based line that contains the byte offset.
+     */
+    public long lineAt(long offset) {
+        if (offset < 0 || offset >= fileSize) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", size: " + fileSize);
+        }
+        int pos = Arrays.binarySearch(offsets, offset);
+        return pos >= 0 ? pos : -pos - 2;
+    }
+
+    public boolean isValidFor(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        return attrs.size() == fileSize && attrs.lastModifiedTime().toMillis() == lastModified;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    // ----- PRIVATE HELPER -----
+    private void checkLine(long line) {
+        if (line < 0 || line >= getLineCount()) {
+            throw new IndexOutOfBoundsException("line: " + line + ", count: " + getLineCount());
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
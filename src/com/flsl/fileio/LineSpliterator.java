@@ -0,0 +1,85 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the lines of a byte range of a file.
+ * Splits happen on byte offsets snapped to the next line start, so a
+ * parallel stream spreads the file over the workers without buffering it
+ * first. Every part reads its own range through a mapped reader.
+ */
+class LineSpliterator implements Spliterator<String> {
+    private static final long MIN_SPLIT_SIZE = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private long start;
+    private final long end;
+    private MappedLineReader reader;
+
+    LineSpliterator(FileChannel channel, long start, long end, Charset charset) {
+        this.channel = channel;
+        this.start = start;
+        this.end = end;
+        this.charset = charset;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        try {
+            if (reader == null) {
+                if (start >= end) {
+                    return false;
+                }
+                int window = (int) Math.min(MappedLineReader.DEFAULT_WINDOW_SIZE, end - start);
+                reader = new MappedLineReader(channel, start, end, window, false);
+            }
+            ByteLine line = reader.nextLine();
+            if (line == null) {
+                return false;
+            }
+            action.accept(line.toString(charset));
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Spliterator<String> trySplit() {
+        if (reader != null || end - start < MIN_SPLIT_SIZE) {
+            return null;
+        }
+        try {
+            long middle = start + (end - start) / 2;
+            long boundary = LineChunker.nextLineStart(channel, middle, end, ByteBuffer.allocate(8 * 1024));
+            if (boundary <= start || boundary >= end) {
+                return null;
+            }
+            LineSpliterator prefix = new LineSpliterator(channel, start, boundary, charset);
+            start = boundary;
+            return prefix;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Remaining bytes; only used as a relative size hint for splitting.
+     */
+    @Override
+    public long estimateSize() {
+        return reader != null ? end - reader.getPosition() : end - start;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
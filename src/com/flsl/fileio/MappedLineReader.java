@@ -0,0 +1,171 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Line reader that walks a file (or a byte range of it) through
+ * MappedByteBuffer windows. Lines are returned as a reusable ByteLine
+ * view; no String is built unless the caller asks for one.
+ * Lines end at '\n'; a trailing '\r' is stripped like BufferedReader does.
+ */
+public class MappedLineReader implements AutoCloseable {
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long end;
+    private final int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private long lineNumber;
+
+    private final ByteLine line = new ByteLine();
+    private byte[] spill = new byte[256];
+    private ByteBuffer spillBuffer = ByteBuffer.wrap(spill);
+
+    public MappedLineReader(String filePath) throws IOException {
+        this(Paths.get(filePath), DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedLineReader(Path path, int windowSize) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ), 0, -1, windowSize, true);
+    }
+
+    /**
+     * Reads the lines in [start, end) of an already open channel.
+     * An end of -1 means "up to the current file size".
+     */
+    MappedLineReader(FileChannel channel, long start, long end, int windowSize,
+                     boolean ownsChannel) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.end = end < 0 ? channel.size() : end;
+        this.windowSize = windowSize;
+        this.position = start;
+    }
+
+    // ----- READING METHODS -----
+    /**
+     * Returns the next line, or null at the end of the range.
+     * The returned view is overwritten by the next call.
+     */
+    public ByteLine nextLine() throws IOException {
+        if (position >= end) {
+            return null;
+        }
+
+        int spillLength = 0;
+        boolean spilled = false;
+        while (true) {
+            if (window == null || position < windowStart
+                    || position >= windowStart + window.limit()) {
+                map(position);
+            }
+
+            int from = (int) (position - windowStart);
+            int limit = window.limit();
+            int i = from;
+            while (i < limit && window.get(i) != '\n') {
+                i++;
+            }
+
+            if (i < limit) {
+                position = windowStart + i + 1;
+                if (spilled) {
+                    spillLength = spill(spillLength, from, i);
+                    line.set(spillBuffer, 0, spillLength);
+                } else {
+                    line.set(window, from, i - from);
+                }
+                break;
+            }
+
+            // Last line of the range without a terminator
+            if (windowStart + limit >= end) {
+                position = end;
+                if (spilled) {
+                    spillLength = spill(spillLength, from, limit);
+                    line.set(spillBuffer, 0, spillLength);
+                } else {
+                    line.set(window, from, limit - from);
+                }
+                break;
+            }
+
+            // Line crosses the window boundary: remap at its start when it fits,
+            // otherwise collect it piece by piece
+            if (!spilled && from > 0) {
+                map(position);
+                continue;
+            }
+            spilled = true;
+            spillLength = spill(spillLength, from, limit);
+            position = windowStart + limit;
+        }
+
+        int length = line.length();
+        if (length > 0 && line.byteAt(length - 1) == '\r') {
+            line.setLength(length - 1);
+        }
+        lineNumber++;
+        return line;
+    }
+
+    /**
+     * Convenience variant that builds a String for the next line.
+     */
+    public String readLine() throws IOException {
+        ByteLine next = nextLine();
+        return next != null ? next.toString() : null;
+    }
+
+    // ----- POSITION -----
+    public long getPosition() {
+        return position;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    // ----- OPEN/CLOSE -----
+    @Override
+    public void close() throws IOException {
+        window = null;
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+
+    // ----- PRIVATE HELPER -----
+    private void map(long start) throws IOException {
+        long size = Math.min(windowSize, end - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+    }
+
+    private int spill(int spillLength, int from, int to) {
+        int count = to - from;
+        if (spillLength + count > spill.length) {
+            byte[] grown = new byte[Math.max(spillLength + count, spill.length * 2)];
+            System.arraycopy(spill, 0, grown, 0, spillLength);
+            spill = grown;
+            spillBuffer = ByteBuffer.wrap(spill);
+        }
+        ByteBuffer view = window.duplicate();
+        view.position(from);
+        view.get(spill, spillLength, count);
+        return spillLength + count;
+    }
+}
@@ -0,0 +1,239 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip output stream that compresses fixed-size blocks in parallel.
+ * Each block is deflated on its own Deflater, primed with the last 32KB of
+ * the previous block, and ended with a sync flush so the blocks join into
+ * one ordinary deflate stream. The result is a standard single-member gzip
+ * file that any gunzip (or GZIPInputStream) can read.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+    
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] HEADER = {
+        0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+    };
+    
+    private final OutputStream out;
+    private final int level;
+    private final int blockSize;
+    private final Executor executor;
+    private final int maxInFlight;
+    
+    private byte[] block;
+    private int count;
+    private byte[] dictionary;
+    private final CRC32 crc = new CRC32();
+    private long totalIn;
+    private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private boolean finished;
+    private boolean closed;
+    
+    public ParallelGzipOutputStream(OutputStream out) throws IOException {
+        this(out, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool());
+    }
+    
+    public ParallelGzipOutputStream(OutputStream out, int level, int blockSize,
+                                    Executor executor) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < 0 || level > 9)) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.out = out;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.executor = executor;
+        this.maxInFlight = 2 * Runtime.getRuntime().availableProcessors();
+        this.block = new byte[blockSize];
+        out.write(HEADER);
+    }
+    
+    // ----- WRITING METHODS -----
+    @Override
+    public void write(int b) throws IOException {
+        ensureWritable();
+        block[count++] = (byte) b;
+        if (count == blockSize) {
+            submitBlock(false);
+        }
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureWritable();
+        while (len > 0) {
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == blockSize) {
+                submitBlock(false);
+            }
+        }
+    }
+    
+    /**
+     * Compresses the partial block and writes every finished block.
+     * Frequent flushes shrink blocks and cost compression ratio.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (count > 0 && !finished) {
+            submitBlock(false);
+        }
+        while (!pending.isEmpty()) {
+            writeHead();
+        }
+        out.flush();
+    }
+    
+    /**
+     * Writes the last block and the gzip trailer without closing the
+     * underlying stream, like GZIPOutputStream.finish(), so the caller can
+     * fsync a complete file before closing it. Later writes fail.
+     */
+    public void finish() throws IOException {
+        ensureOpen();
+        if (finished) {
+            return;
+        }
+        finished = true;
+        submitBlock(true);
+        while (!pending.isEmpty()) {
+            writeHead();
+        }
+        writeTrailer();
+        out.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            finish();
+        } finally {
+            closed = true;
+            pending.clear();
+            out.close();
+        }
+    }
+    
+    // ----- PRIVATE HELPER -----
+    private void submitBlock(boolean last) throws IOException {
+        byte[] data = block;
+        int length = count;
+        byte[] dict = dictionary;
+        crc.update(data, 0, length);
+        totalIn += length;
+        
+        if (!last) {
+            dictionary = nextDictionary(dict, data, length);
+            block = new byte[blockSize];
+            count = 0;
+        }
+        pending.add(CompletableFuture.supplyAsync(() -> deflate(data, length, dict, last), executor));
+        while (pending.size() > maxInFlight) {
+            writeHead();
+        }
+    }
+    
+    private byte[] deflate(byte[] data, int length, byte[] dict, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dict != null) {
+                deflater.setDictionary(dict);
+            }
+            deflater.setInput(data, 0, length);
+            byte[] buf = new byte[length + (length >> 3) + 64];
+            int n = 0;
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    if (n == buf.length) {
+                        buf = Arrays.copyOf(buf, buf.length * 2);
+                    }
+                    n += deflater.deflate(buf, n, buf.length - n);
+                }
+            } else {
+                // A full output buffer means the sync flush is not done yet
+                do {
+                    if (n == buf.length) {
+                        buf = Arrays.copyOf(buf, buf.length * 2);
+                    }
+                    n += deflater.deflate(buf, n, buf.length - n, Deflater.SYNC_FLUSH);
+                } while (n == buf.length);
+            }
+            return Arrays.copyOf(buf, n);
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private static byte[] nextDictionary(byte[] previous, byte[] data, int length) {
+        if (length >= DICTIONARY_SIZE || previous == null) {
+            int n = Math.min(length, DICTIONARY_SIZE);
+            return Arrays.copyOfRange(data, length - n, length);
+        }
+        // Short block: keep the tail of the previous dictionary in front
+        int keep = Math.min(previous.length, DICTIONARY_SIZE - length);
+        byte[] dict = new byte[keep + length];
+        System.arraycopy(previous, previous.length - keep, dict, 0, keep);
+        System.arraycopy(data, 0, dict, keep, length);
+        return dict;
+    }
+    
+    private void writeHead() throws IOException {
+        CompletableFuture<byte[]> head = pending.poll();
+        try {
+            out.write(head.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Compression failed", e.getCause());
+        }
+    }
+    
+    private void writeTrailer() throws IOException {
+        long value = crc.getValue();
+        long size = totalIn & 0xFFFFFFFFL;
+        byte[] trailer = new byte[8];
+        for (int i = 0; i < 4; i++) {
+            trailer[i] = (byte) (value >>> (8 * i));
+            trailer[4 + i] = (byte) (size >>> (8 * i));
+        }
+        out.write(trailer);
+    }
+    
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+    
+    private void ensureWritable() throws IOException {
+        ensureOpen();
+        if (finished) {
+            throw new IOException("Stream finished");
+        }
+    }
+}
@@ -1,24 +1,54 @@
 package com.flsl.fileio;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Enhanced file reader with various reading strategies.
  * IMPLEMENTED AutoCloseable to prevent resource leaks.
+ * Paths ending in ".gz" are decompressed by default (see Compression);
+ * setCompression(Compression.NONE) reads their raw bytes.
  */
 public class Reader implements AutoCloseable {  
     private final File file;
     private BufferedReader reader;
     private boolean isOpen = false; 
+    private LineIndex lineIndex;
+    private final Charset charset;
+    private Compression compression = Compression.AUTO;
     
     public Reader(File file) {
-        this.file = file;
+        this(file, StandardCharsets.UTF_8);
     }
     
     public Reader(String filePath) {
-        this.file = new File(filePath);
+        this(new File(filePath), StandardCharsets.UTF_8);
+    }
+    
+    public Reader(File file, Charset charset) {
+        this.file = file;
+        this.charset = charset;
+    }
+    
+    public Reader(String filePath, Charset charset) {
+        this(new File(filePath), charset);
     }
     
     // ----- OPEN/CLOSE -----
@@ -28,9 +58,7 @@ public class Reader implements AutoCloseable {
         }
         
         reader = new BufferedReader(
-            new InputStreamReader(
-                new FileInputStream(file.getPath())
-            )
+            FastCharsets.newReader(openInput(file.getPath(), compression), charset)
         );
         isOpen = true; 
     }
@@ -78,16 +106,33 @@ public class Reader implements AutoCloseable {
     }
     
     // ----- ADVANCED READING -----
+    /**
+     * Reads up to (and consumes) the next occurrence of the delimiter.
+     * Matching is incremental (KMP), so long tokens stay linear.
+     */
     public String readUntil(String delimiter) throws IOException {
         ensureOpen();
         
+        if (delimiter.isEmpty()) {
+            int ch = reader.read();
+            return ch == -1 ? "" : String.valueOf((char) ch);
+        }
+        
+        int[] fallback = kmpTable(delimiter);
         StringBuilder result = new StringBuilder();
+        int matched = 0;
         int ch;
         while ((ch = reader.read()) != -1) {
             char c = (char) ch;
             result.append(c);
             
-            if (result.toString().endsWith(delimiter)) {
+            while (matched > 0 && delimiter.charAt(matched) != c) {
+                matched = fallback[matched - 1];
+            }
+            if (delimiter.charAt(matched) == c) {
+                matched++;
+            }
+            if (matched == delimiter.length()) {
                 result.setLength(result.length() - delimiter.length());
                 break;
             }
@@ -96,6 +141,16 @@ public class Reader implements AutoCloseable {
         return result.toString();
     }
     
+    /**
+     * Streams the rest of the file as tokens split on any of the delimiters.
+     * The tokenizer reads ahead in bulk, so other read methods should not
+     * be mixed with it on the same Reader.
+     */
+    public DelimiterTokenizer tokenize(String... delimiters) throws IOException {
+        ensureOpen();
+        return new DelimiterTokenizer(reader, delimiters);
+    }
+    
     public String peekLine() throws IOException {
         ensureOpen();
         
@@ -105,23 +160,278 @@ public class Reader implements AutoCloseable {
         return line;
     }
     
+    // ----- MAPPED READING -----
+    /**
+     * Opens a memory-mapped line reader over this file.
+     * Independent of the buffered reader; the caller closes it.
+     */
+    public MappedLineReader openMapped() throws IOException {
+        return openMapped(MappedLineReader.DEFAULT_WINDOW_SIZE);
+    }
+    
+    public MappedLineReader openMapped(int windowSize) throws IOException {
+        requireUncompressed();
+        return new MappedLineReader(file.getNioPath(), windowSize);
+    }
+    
+    /**
+     * Walks every line of the file in mapped mode.
+     * The ByteLine passed to the handler is only valid during the call.
+     */
+    public void forEachLine(LineHandler handler) throws IOException {
+        if (isCompressed()) {
+            try (InputStream in = openInput(file.getPath(), compression)) {
+                forEachLine(in, handler);
+            }
+            return;
+        }
+        try (MappedLineReader mapped = openMapped()) {
+            ByteLine line;
+            while ((line = mapped.nextLine()) != null) {
+                handler.handle(line);
+            }
+        }
+    }
+    
+    // ----- STREAMS -----
+    /**
+     * Lazy stream over every line of the file (independent of the read
+     * position). The stream splits on byte offsets, so .parallel() spreads
+     * the work across cores without loading the file. Close the stream to
+     * release the file.
+     */
+    public Stream<String> lines() throws IOException {
+        if (isCompressed()) {
+            return compressedLines(file.getPath(), charset);
+        }
+        return lines(file.getPath(), charset);
+    }
+    
+    public static Stream<String> lines(String filePath) throws IOException {
+        return lines(filePath, StandardCharsets.UTF_8);
+    }
+    
+    public static Stream<String> lines(String filePath, Charset charset) throws IOException {
+        if (Compression.AUTO.appliesTo(filePath)) {
+            return compressedLines(filePath, charset);
+        }
+        return lines(filePath, 0, -1, charset);
+    }
+    
+    /**
+     * Stream over the lines in the byte range [start, end) of an
+     * uncompressed file. start must be the start of a line; an end of -1
+     * means the end of the file.
+     */
+    public static Stream<String> lines(String filePath, long start, long end, Charset charset)
+            throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            long limit = end < 0 ? size : Math.min(end, size);
+            LineSpliterator spliterator = new LineSpliterator(channel, Math.min(start, limit), limit, charset);
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    // ----- REVERSE READING -----
+    /**
+     * Returns the last n lines of the file, in file order, reading
+     * backwards from the end instead of through the whole file.
+     */
+    public List<String> tail(int n) throws IOException {
+        requireUncompressed();
+        try (ReverseLineReader reverse = new ReverseLineReader(file.getNioPath(), charset)) {
+            return reverse.tail(n);
+        }
+    }
+    
+    // ----- FOLLOW MODE -----
+    /**
+     * Follows the file as it grows, delivering only newly appended lines.
+     * With fromEnd set, existing content is skipped like "tail -f".
+     */
+    public FileFollower follow(boolean fromEnd) {
+        return new FileFollower(file.getNioPath(), charset, fromEnd);
+    }
+    
     // ----- STATISTICS -----
+    /**
+     * Counts the lines of the whole file through its line index.
+     * The first call scans the raw bytes (or loads the sidecar index);
+     * later calls are O(1). The read position is left untouched.
+     */
     public int countLines() throws IOException {
-        ensureOpen();
-        
-        int count = 0;
-        while (reader.readLine() != null) {
-            count++;
+        if (isCompressed()) {
+            // No byte offsets to index; count while decompressing
+            int[] count = new int[1];
+            forEachLine(line -> count[0]++);
+            return count[0];
         }
-        
+        return Math.toIntExact(getLineIndex().getLineCount());
+    }
+    
+    public LineIndex getLineIndex() throws IOException {
+        requireUncompressed();
+        if (lineIndex == null || !lineIndex.isValidFor(file.getNioPath())) {
+            lineIndex = LineIndex.forFile(file.getNioPath());
+        }
+        return lineIndex;
+    }
+    
+    // ----- RANDOM ACCESS -----
+    /**
+     * Moves the read position to the start of the zero-based line.
+     */
+    public void seekLine(long lineNumber) throws IOException {
+        long offset = getLineIndex().getLineStart(lineNumber);
         
         close();
-        open();
+        FileInputStream in = new FileInputStream(file.getPath());
+        try {
+            in.getChannel().position(offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        reader = new BufferedReader(FastCharsets.newReader(in, charset));
+        isOpen = true;
+    }
+    
+    /**
+     * Reads the zero-based line without moving the read position.
+     */
+    public String peekLine(long lineNumber) throws IOException {
+        LineIndex index = getLineIndex();
+        long start = index.getLineStart(lineNumber);
+        int length = Math.toIntExact(index.getLineEnd(lineNumber) - start);
+        
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file.getNioPath(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        }
         
-        return count;
+        int end = buffer.position();
+        if (end > 0 && buffer.get(end - 1) == '\n') end--;
+        if (end > 0 && buffer.get(end - 1) == '\r') end--;
+        return FastCharsets.decode(buffer.array(), 0, end, charset);
+    }
+    
+    public Charset getCharset() {
+        return charset;
+    }
+    
+    // ----- COMPRESSION -----
+    /**
+     * Selects gzip input. The default AUTO decompresses paths ending in
+     * ".gz". Takes effect on the next open(). Compressed files have no
+     * usable byte offsets, so mapped reading, the line index and random
+     * access throw an IOException and line-wise methods run sequentially.
+     */
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+    
+    public Compression getCompression() {
+        return compression;
+    }
+    
+    public boolean isCompressed() {
+        return compression.appliesTo(file.getPath());
     }
     
     // ----- PRIVATE HELPER -----
+    private static int[] kmpTable(String pattern) {
+        int[] table = new int[pattern.length()];
+        int k = 0;
+        for (int i = 1; i < pattern.length(); i++) {
+            while (k > 0 && pattern.charAt(i) != pattern.charAt(k)) {
+                k = table[k - 1];
+            }
+            if (pattern.charAt(i) == pattern.charAt(k)) {
+                k++;
+            }
+            table[i] = k;
+        }
+        return table;
+    }
+    
+    private static InputStream openInput(String filePath, Compression compression) throws IOException {
+        FileInputStream in = new FileInputStream(filePath);
+        if (!compression.appliesTo(filePath)) {
+            return in;
+        }
+        try {
+            return new GZIPInputStream(in, 64 * 1024);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+    
+    private static Stream<String> compressedLines(String filePath, Charset charset) throws IOException {
+        BufferedReader lines = new BufferedReader(
+            FastCharsets.newReader(openInput(filePath, Compression.GZIP), charset));
+        return lines.lines().onClose(() -> {
+            try {
+                lines.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+    
+    /**
+     * Splits a stream into ByteLines over one reused heap buffer.
+     */
+    private static void forEachLine(InputStream in, LineHandler handler) throws IOException {
+        byte[] chunk = new byte[64 * 1024];
+        byte[] line = new byte[256];
+        int length = 0;
+        ByteLine view = new ByteLine();
+        int read;
+        while ((read = in.read(chunk)) > 0) {
+            for (int i = 0; i < read; i++) {
+                byte b = chunk[i];
+                if (b == '\n') {
+                    int end = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+                    view.set(ByteBuffer.wrap(line), 0, end);
+                    handler.handle(view);
+                    length = 0;
+                    continue;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, line.length * 2);
+                }
+                line[length++] = b;
+            }
+        }
+        if (length > 0) {
+            int end = line[length - 1] == '\r' ? length - 1 : length;
+            view.set(ByteBuffer.wrap(line), 0, end);
+            handler.handle(view);
+        }
+    }
+    
+    private void requireUncompressed() throws IOException {
+        if (isCompressed()) {
+            throw new IOException("Not supported on compressed file: " + file.getPath());
+        }
+    }
+    
     private void ensureOpen() throws IOException {
         if (!isOpen) {
             open();
@@ -136,6 +446,10 @@ public class Reader implements AutoCloseable {
         T execute(Reader reader) throws IOException;
     }
     
+    public interface LineHandler {
+        void handle(ByteLine line) throws IOException;
+    }
+    
     public static <T> T withReader(String filePath, ReadOperation<T> operation) 
             throws IOException {
         try (Reader reader = new Reader(filePath)) {  
@@ -146,6 +460,110 @@ public class Reader implements AutoCloseable {
     }
     
     
+    // ----- PARALLEL PROCESSING -----
+    public interface LineAccumulator<A> {
+        void accept(A result, ByteLine line) throws IOException;
+    }
+    
+    /**
+     * Processes one file in parallel on the common fork/join pool.
+     * See {@link #processChunks(String, int, Executor, Supplier, LineAccumulator, BinaryOperator)}.
+     */
+    public static <A> A processChunks(String filePath, Supplier<A> supplier,
+                                      LineAccumulator<A> accumulator,
+                                      BinaryOperator<A> combiner) throws IOException {
+        int chunks = Runtime.getRuntime().availableProcessors() * 2;
+        return processChunks(filePath, chunks, ForkJoinPool.commonPool(),
+                             supplier, accumulator, combiner);
+    }
+    
+    /**
+     * Splits the file into newline-aligned byte ranges and runs each range
+     * on the executor. Every range gets its own result from the supplier,
+     * the accumulator is called once per line, and the per-range results
+     * are merged with the combiner in file order.
+     */
+    public static <A> A processChunks(String filePath, int chunks, Executor executor,
+                                      Supplier<A> supplier,
+                                      LineAccumulator<A> accumulator,
+                                      BinaryOperator<A> combiner) throws IOException {
+        if (Compression.AUTO.appliesTo(filePath)) {
+            // A gzip stream cannot be split by offset; process it in one pass
+            A result = supplier.get();
+            try (InputStream in = openInput(filePath, Compression.GZIP)) {
+                forEachLine(in, line -> accumulator.accept(result, line));
+            }
+            return result;
+        }
+        return processChunks(filePath, 0, -1, chunks, executor, supplier, accumulator, combiner);
+    }
+    
+    /**
+     * Like processChunks, limited to the lines in the byte range
+     * [start, end) of an uncompressed file. start must be the start of a
+     * line; an end of -1 means the end of the file.
+     */
+    public static <A> A processChunks(String filePath, long start, long end, int chunks,
+                                      Executor executor, Supplier<A> supplier,
+                                      LineAccumulator<A> accumulator,
+                                      BinaryOperator<A> combiner) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long limit = end < 0 ? size : Math.min(end, size);
+            long[] bounds = LineChunker.split(channel, Math.min(start, limit), limit, chunks);
+            
+            List<CompletableFuture<A>> futures = new ArrayList<>();
+            for (int i = 0; i < bounds.length - 1; i++) {
+                long from = bounds[i];
+                long to = bounds[i + 1];
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return processRange(channel, from, to, supplier, accumulator);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, executor));
+            }
+            
+            A result = null;
+            for (CompletableFuture<A> future : futures) {
+                A part = join(future);
+                result = result == null ? part : combiner.apply(result, part);
+            }
+            return result != null ? result : supplier.get();
+        }
+    }
+    
+    private static <A> A processRange(FileChannel channel, long start, long end,
+                                      Supplier<A> supplier,
+                                      LineAccumulator<A> accumulator) throws IOException {
+        A result = supplier.get();
+        int window = (int) Math.min(MappedLineReader.DEFAULT_WINDOW_SIZE, Math.max(1, end - start));
+        try (MappedLineReader mapped = new MappedLineReader(channel, start, end, window, false)) {
+            ByteLine line;
+            while ((line = mapped.nextLine()) != null) {
+                accumulator.accept(result, line);
+            }
+        }
+        return result;
+    }
+    
+    private static <A> A join(CompletableFuture<A> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    
+    
     @Override
     protected void finalize() throws Throwable {
         try {
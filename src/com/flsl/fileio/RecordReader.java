@@ -0,0 +1,256 @@
+package com.flsl.fileio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads records written by RecordWriter.
+ * Sequential mode reads through a pooled direct buffer; mapped mode walks
+ * MappedByteBuffer windows, which makes seek() to any offset cheap. Both
+ * modes support seek(); in sequential mode a seek outside the buffered
+ * range discards the buffer.
+ */
+public class RecordReader implements AutoCloseable {
+    private static final int MAX_VARINT_BYTES = 10;
+    
+    private final FileChannel channel;
+    private final long size;
+    private final boolean mapped;
+    private final int windowSize;
+    private final BufferPool pool;
+    
+    // Bytes of the file starting at bufferStart; the read position is
+    // bufferStart + buffer.position()
+    private ByteBuffer buffer;
+    private long bufferStart;
+    private boolean closed;
+    
+    public RecordReader(String filePath) throws IOException {
+        this(Paths.get(filePath), false);
+    }
+    
+    public RecordReader(Path path, boolean mapped) throws IOException {
+        this(path, mapped, MappedLineReader.DEFAULT_WINDOW_SIZE);
+    }
+    
+    public RecordReader(Path path, boolean mapped, int windowSize) throws IOException {
+        if (windowSize < MAX_VARINT_BYTES) {
+            throw new IllegalArgumentException("Window size too small: " + windowSize);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.mapped = mapped;
+        this.windowSize = windowSize;
+        this.pool = BufferPool.shared();
+        if (mapped) {
+            this.buffer = ByteBuffer.allocate(0);
+        } else {
+            this.buffer = pool.acquire();
+            this.buffer.limit(0);
+        }
+    }
+    
+    // ----- FIXED-WIDTH VALUES -----
+    public byte getByte() throws IOException {
+        return ensure(1).get();
+    }
+    
+    public boolean getBoolean() throws IOException {
+        return ensure(1).get() != 0;
+    }
+    
+    public short getShort() throws IOException {
+        return ensure(2).getShort();
+    }
+    
+    public char getChar() throws IOException {
+        return ensure(2).getChar();
+    }
+    
+    public int getInt() throws IOException {
+        return ensure(4).getInt();
+    }
+    
+    public long getLong() throws IOException {
+        return ensure(8).getLong();
+    }
+    
+    public float getFloat() throws IOException {
+        return ensure(4).getFloat();
+    }
+    
+    public double getDouble() throws IOException {
+        return ensure(8).getDouble();
+    }
+    
+    // ----- VARIABLE-LENGTH VALUES -----
+    public int getVarInt() throws IOException {
+        long value = getVarLong();
+        if ((value >>> 32) != 0) {
+            throw new IOException("Varint does not fit in an int at offset " + position());
+        }
+        return (int) value;
+    }
+    
+    public long getVarLong() throws IOException {
+        ByteBuffer in = buffer.remaining() >= MAX_VARINT_BYTES ? buffer : null;
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in != null ? in.get() : ensure(1).get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint at offset " + position());
+    }
+    
+    public int getSignedVarInt() throws IOException {
+        int value = getVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    public long getSignedVarLong() throws IOException {
+        long value = getVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    // ----- BLOBS -----
+    /**
+     * Reads a length-prefixed blob. A length that is negative or runs past
+     * the end of the file fails before anything is allocated.
+     */
+    public byte[] getBytes() throws IOException {
+        long start = position();
+        int length = getVarInt();
+        if (length < 0) {
+            throw new IOException("Corrupt blob length " + (length & 0xFFFFFFFFL) + " at offset " + start);
+        }
+        if (length > size - position()) {
+            throw new EOFException("Blob of " + length + " bytes at offset " + start
+                                   + " runs past the end of the file");
+        }
+        byte[] bytes = new byte[length];
+        int available = Math.min(length, buffer.remaining());
+        buffer.get(bytes, 0, available);
+        if (available == length) {
+            return bytes;
+        }
+        
+        // Refill through the buffer when the rest fits, otherwise read directly
+        int rest = length - available;
+        if (rest <= (mapped ? windowSize : buffer.capacity())) {
+            ensure(rest).get(bytes, available, rest);
+            return bytes;
+        }
+        long from = position();
+        ByteBuffer target = ByteBuffer.wrap(bytes, available, rest);
+        while (target.hasRemaining()) {
+            if (channel.read(target, from + target.position() - available) < 0) {
+                throw new EOFException();
+            }
+        }
+        moveTo(from + rest);
+        return bytes;
+    }
+    
+    public String getString() throws IOException {
+        byte[] bytes = getBytes();
+        return FastCharsets.decode(bytes, 0, bytes.length, StandardCharsets.UTF_8);
+    }
+    
+    // ----- POSITION -----
+    public long position() {
+        return bufferStart + buffer.position();
+    }
+    
+    /**
+     * Moves to a file offset, usually one returned by RecordWriter.position().
+     */
+    public void seek(long offset) throws IOException {
+        if (offset < 0 || offset > size) {
+            throw new IllegalArgumentException("Offset out of range: " + offset);
+        }
+        if (offset >= bufferStart && offset <= bufferStart + buffer.limit()) {
+            buffer.position((int) (offset - bufferStart));
+        } else {
+            moveTo(offset);
+        }
+    }
+    
+    public boolean hasRemaining() {
+        return position() < size;
+    }
+    
+    public long size() {
+        return size;
+    }
+    
+    public boolean isMapped() {
+        return mapped;
+    }
+    
+    // ----- CLOSE -----
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!mapped) {
+            pool.release(buffer);
+        }
+        buffer = ByteBuffer.allocate(0);
+        channel.close();
+    }
+    
+    // ----- PRIVATE HELPER -----
+    /**
+     * Makes at least the given number of bytes readable from the buffer.
+     */
+    private ByteBuffer ensure(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        if (closed) {
+            throw new IOException("Reader is closed");
+        }
+        long position = position();
+        if (position + bytes > size) {
+            throw new EOFException("Unexpected end of file at offset " + position);
+        }
+        if (mapped) {
+            long length = Math.min(windowSize, size - position);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            bufferStart = position;
+            return buffer;
+        }
+        
+        buffer.compact();
+        bufferStart = position;
+        while (buffer.position() < bytes) {
+            int read = channel.read(buffer, bufferStart + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at offset " + position);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    private void moveTo(long offset) {
+        bufferStart = offset;
+        if (mapped) {
+            buffer = ByteBuffer.allocate(0);
+        } else {
+            buffer.clear();
+            buffer.limit(0);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes binary records to a FileChannel through a pooled direct buffer.
+ * Fixed-width values are big-endian, like DataOutputStream. Varints use
+ * 7 bits per byte (LEB128); the signed variants zigzag-encode first so
+ * small negative numbers stay short. Blobs and strings are prefixed with
+ * their length as a varint. Read the file back with RecordReader.
+ */
+public class RecordWriter implements AutoCloseable {
+    private final FileChannel channel;
+    private final BufferPool pool;
+    private ByteBuffer buffer;
+    private long bufferStart;
+    
+    public RecordWriter(String filePath) throws IOException {
+        this(Paths.get(filePath), false);
+    }
+    
+    public RecordWriter(Path path, boolean append) throws IOException {
+        this(path, append, BufferPool.shared());
+    }
+    
+    public RecordWriter(Path path, boolean append, BufferPool pool) throws IOException {
+        this.channel = append
+            ? FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE)
+            : FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                               StandardOpenOption.TRUNCATE_EXISTING);
+        this.pool = pool;
+        this.bufferStart = append ? channel.size() : 0;
+        this.buffer = pool.acquire();
+    }
+    
+    // ----- FIXED-WIDTH VALUES -----
+    public RecordWriter putByte(byte value) throws IOException {
+        ensure(1).put(value);
+        return this;
+    }
+    
+    public RecordWriter putBoolean(boolean value) throws IOException {
+        ensure(1).put(value ? (byte) 1 : (byte) 0);
+        return this;
+    }
+    
+    public RecordWriter putShort(short value) throws IOException {
+        ensure(2).putShort(value);
+        return this;
+    }
+    
+    public RecordWriter putChar(char value) throws IOException {
+        ensure(2).putChar(value);
+        return this;
+    }
+    
+    public RecordWriter putInt(int value) throws IOException {
+        ensure(4).putInt(value);
+        return this;
+    }
+    
+    public RecordWriter putLong(long value) throws IOException {
+        ensure(8).putLong(value);
+        return this;
+    }
+    
+    public RecordWriter putFloat(float value) throws IOException {
+        ensure(4).putFloat(value);
+        return this;
+    }
+    
+    public RecordWriter putDouble(double value) throws IOException {
+        ensure(8).putDouble(value);
+        return this;
+    }
+    
+    // ----- VARIABLE-LENGTH VALUES -----
+    /**
+     * Writes an int as an unsigned varint: 1 byte below 128, at most 5.
+     * Negative values take the full 5 bytes; use putSignedVarInt for them.
+     */
+    public RecordWriter putVarInt(int value) throws IOException {
+        return putVarLong(value & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Writes a long as an unsigned varint, at most 10 bytes.
+     */
+    public RecordWriter putVarLong(long value) throws IOException {
+        ByteBuffer out = ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+        return this;
+    }
+    
+    public RecordWriter putSignedVarInt(int value) throws IOException {
+        return putVarInt((value << 1) ^ (value >> 31));
+    }
+    
+    public RecordWriter putSignedVarLong(long value) throws IOException {
+        return putVarLong((value << 1) ^ (value >> 63));
+    }
+    
+    // ----- BLOBS -----
+    public RecordWriter putBytes(byte[] bytes) throws IOException {
+        return putBytes(bytes, 0, bytes.length);
+    }
+    
+    /**
+     * Writes a varint length followed by the bytes. Blobs larger than the
+     * buffer go straight to the channel.
+     */
+    public RecordWriter putBytes(byte[] bytes, int offset, int length) throws IOException {
+        putVarInt(length);
+        if (length <= buffer.remaining()) {
+            buffer.put(bytes, offset, length);
+            return this;
+        }
+        flushBuffer();
+        if (length <= buffer.capacity()) {
+            buffer.put(bytes, offset, length);
+        } else {
+            ByteBuffer blob = ByteBuffer.wrap(bytes, offset, length);
+            while (blob.hasRemaining()) {
+                channel.write(blob, bufferStart + blob.position() - offset);
+            }
+            bufferStart += length;
+        }
+        return this;
+    }
+    
+    /**
+     * Writes the string as length-prefixed UTF-8.
+     */
+    public RecordWriter putString(String value) throws IOException {
+        return putBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    // ----- POSITION -----
+    /**
+     * File offset the next value will be written at. Pass it to
+     * RecordReader.seek() to come back to this record.
+     */
+    public long position() {
+        return bufferStart + buffer.position();
+    }
+    
+    // ----- FLUSH/CLOSE -----
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+    
+    /**
+     * Flushes and forces the written bytes to disk.
+     */
+    public void sync() throws IOException {
+        flushBuffer();
+        channel.force(false);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flushBuffer();
+        } finally {
+            pool.release(buffer);
+            buffer = null;
+            channel.close();
+        }
+    }
+    
+    // ----- PRIVATE HELPER -----
+    private ByteBuffer ensure(int bytes) throws IOException {
+        if (buffer == null) {
+            throw new IOException("Writer is closed");
+        }
+        if (buffer.remaining() < bytes) {
+            flushBuffer();
+        }
+        return buffer;
+    }
+    
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, bufferStart + buffer.position());
+        }
+        bufferStart += buffer.limit();
+        buffer.clear();
+    }
+}
@@ -0,0 +1,164 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the lines of a file from last to first.
+ * The file is pulled backwards in 64KB blocks with positional reads, and
+ * each line is assembled from the right in one growing byte array before
+ * it is decoded. Lines are split on the '\n' byte, which never occurs
+ * inside a multi-byte UTF-8 sequence, so whole lines decode correctly in
+ * UTF-8 and other ASCII-compatible charsets. A trailing line terminator
+ * does not produce an empty last line, and '\r' is stripped.
+ */
+public class ReverseLineReader implements AutoCloseable {
+    public static final int BLOCK_SIZE = 64 * 1024;
+    
+    private final FileChannel channel;
+    private final Charset charset;
+    private final byte[] block = new byte[BLOCK_SIZE];
+    
+    // Unread bytes are [blockStart, blockStart + blockLength) in the block
+    // and everything before blockStart in the file
+    private long blockStart;
+    private int blockLength;
+    private boolean done;
+    
+    // Current line, filled from the right: line[lineStart, line.length)
+    private byte[] line = new byte[256];
+    private int lineStart = line.length;
+    private long lastLineOffset = -1;
+    
+    public ReverseLineReader(Path path) throws IOException {
+        this(path, StandardCharsets.UTF_8);
+    }
+    
+    public ReverseLineReader(Path path, Charset charset) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.charset = charset;
+        try {
+            long size = channel.size();
+            this.blockStart = size;
+            this.done = size == 0;
+            if (size > 0 && endsWithNewline(size)) {
+                blockStart = size - 1;
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    // ----- READING METHODS -----
+    /**
+     * Returns the line before the previously returned one (the last line
+     * on the first call), or null once the start of the file is reached.
+     */
+    public String readPreviousLine() throws IOException {
+        if (done) {
+            return null;
+        }
+        while (true) {
+            if (blockLength == 0) {
+                if (blockStart == 0) {
+                    done = true;
+                    lastLineOffset = 0;
+                    return takeLine();
+                }
+                loadPreviousBlock();
+            }
+            
+            int i = blockLength - 1;
+            while (i >= 0 && block[i] != '\n') {
+                i--;
+            }
+            prepend(i + 1, blockLength);
+            if (i >= 0) {
+                blockLength = i;
+                lastLineOffset = blockStart + i + 1;
+                return takeLine();
+            }
+            blockLength = 0;
+        }
+    }
+    
+    /**
+     * The last n lines in file order (fewer if the file is shorter).
+     */
+    public List<String> tail(int n) throws IOException {
+        List<String> lines = new ArrayList<>(Math.min(n, 1024));
+        String current;
+        while (lines.size() < n && (current = readPreviousLine()) != null) {
+            lines.add(current);
+        }
+        Collections.reverse(lines);
+        return lines;
+    }
+    
+    /**
+     * Byte offset where the most recently returned line starts, or -1
+     * before the first call.
+     */
+    public long getLineOffset() {
+        return lastLineOffset;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    // ----- PRIVATE HELPER -----
+    private boolean endsWithNewline(long size) throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        return channel.read(last, size - 1) == 1 && last.get(0) == '\n';
+    }
+    
+    private void loadPreviousBlock() throws IOException {
+        int length = (int) Math.min(BLOCK_SIZE, blockStart);
+        long start = blockStart - length;
+        ByteBuffer target = ByteBuffer.wrap(block, 0, length);
+        while (target.hasRemaining()) {
+            if (channel.read(target, start + target.position()) < 0) {
+                throw new IOException("File shrank while reading backwards");
+            }
+        }
+        blockStart = start;
+        blockLength = length;
+    }
+    
+    private void prepend(int from, int to) {
+        int count = to - from;
+        if (count == 0) {
+            return;
+        }
+        if (lineStart < count) {
+            int used = line.length - lineStart;
+            byte[] grown = new byte[Math.max(line.length * 2, used + count)];
+            System.arraycopy(line, lineStart, grown, grown.length - used, used);
+            lineStart = grown.length - used;
+            line = grown;
+        }
+        lineStart -= count;
+        System.arraycopy(block, from, line, lineStart, count);
+    }
+    
+    private String takeLine() {
+        int end = line.length;
+        if (end > lineStart && line[end - 1] == '\r') {
+            end--;
+        }
+        String text = FastCharsets.decode(line, lineStart, end - lineStart, charset);
+        lineStart = line.length;
+        return text;
+    }
+}
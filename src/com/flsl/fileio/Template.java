@@ -0,0 +1,426 @@
+package com.flsl.fileio;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Precompiled format template for Writer.
+ * The pattern is parsed once; writing renders literals and primitive
+ * arguments straight into the writer's buffer without String.format,
+ * boxing or temporary Strings.
+ *
+ * Supported specifiers: %s, %d, %x, %c, %b, %f, %.Nf, %n and %%.
+ * %f rounds half-up on the binary value, so the last digit can differ
+ * from String.format for values such as 1.005. %x prints negative values
+ * in the two's complement width of the argument (int, long, short, byte),
+ * like String.format.
+ */
+public final class Template {
+    static final byte LITERAL = 0;
+    static final byte STRING = 1;
+    static final byte DECIMAL = 2;
+    static final byte HEX = 3;
+    static final byte CHAR = 4;
+    static final byte BOOLEAN = 5;
+    static final byte FLOAT = 6;
+
+    private static final long[] POW10 = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+
+    private final String pattern;
+    private final byte[] kinds;
+    private final char[][] literals;
+    private final int[] precisions;
+    private final int argumentCount;
+
+    private Template(String pattern, byte[] kinds, char[][] literals, int[] precisions) {
+        this.pattern = pattern;
+        this.kinds = kinds;
+        this.literals = literals;
+        this.precisions = precisions;
+        int count = 0;
+        for (byte kind : kinds) {
+            if (kind != LITERAL) count++;
+        }
+        this.argumentCount = count;
+    }
+
+    // ----- COMPILE -----
+    public static Template compile(String pattern) {
+        List<Byte> kinds = new ArrayList<>();
+        List<char[]> literals = new ArrayList<>();
+        List<Integer> precisions = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (i >= pattern.length()) {
+                throw new IllegalArgumentException("Dangling '%' in template: " + pattern);
+            }
+
+            int precision = -1;
+            if (pattern.charAt(i) == '.') {
+                int start = ++i;
+                while (i < pattern.length() && Character.isDigit(pattern.charAt(i))) i++;
+                if (i == start || i >= pattern.length()) {
+                    throw new IllegalArgumentException("Bad precision in template: " + pattern);
+                }
+                precision = Integer.parseInt(pattern.substring(start, i));
+                if (precision >= POW10.length) {
+                    throw new IllegalArgumentException("Precision too large in template: " + pattern);
+                }
+            }
+
+            char conversion = pattern.charAt(i++);
+            byte kind;
+            switch (conversion) {
+                case '%': literal.append('%'); continue;
+                case 'n': literal.append(System.lineSeparator()); continue;
+                case 's': kind = STRING; break;
+                case 'd': kind = DECIMAL; break;
+                case 'x': kind = HEX; break;
+                case 'c': kind = CHAR; break;
+                case 'b': kind = BOOLEAN; break;
+                case 'f': kind = FLOAT; break;
+                default:
+                    throw new IllegalArgumentException(
+                        "Unsupported specifier '%" + conversion + "' in template: " + pattern);
+            }
+            if (precision >= 0 && kind != FLOAT) {
+                throw new IllegalArgumentException("Precision is only supported for %f: " + pattern);
+            }
+
+            if (literal.length() > 0) {
+                kinds.add(LITERAL);
+                literals.add(literal.toString().toCharArray());
+                precisions.add(-1);
+                literal.setLength(0);
+            }
+            kinds.add(kind);
+            literals.add(null);
+            precisions.add(kind == FLOAT ? (precision < 0 ? 6 : precision) : -1);
+        }
+        if (literal.length() > 0) {
+            kinds.add(LITERAL);
+            literals.add(literal.toString().toCharArray());
+            precisions.add(-1);
+        }
+
+        byte[] kindArray = new byte[kinds.size()];
+        int[] precisionArray = new int[kinds.size()];
+        for (int k = 0; k < kindArray.length; k++) {
+            kindArray[k] = kinds.get(k);
+            precisionArray[k] = precisions.get(k);
+        }
+        return new Template(pattern, kindArray, literals.toArray(new char[0][]), precisionArray);
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+    // ----- RENDERING -----
+    /**
+     * Renders into a String, mostly for debugging and tests.
+     */
+    public String format(Args args) {
+        java.io.CharArrayWriter out = new java.io.CharArrayWriter();
+        try {
+            render(args, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    void render(Args args, java.io.Writer out) throws IOException {
+        if (args.size != argumentCount) {
+            throw new IllegalArgumentException("Template '" + pattern + "' expects "
+                + argumentCount + " arguments, got " + args.size);
+        }
+        int arg = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            byte kind = kinds[i];
+            if (kind == LITERAL) {
+                out.write(literals[i]);
+                continue;
+            }
+            renderArgument(kind, precisions[i], args, arg++, out);
+        }
+    }
+
+    private void renderArgument(byte kind, int precision, Args args, int index,
+                                java.io.Writer out) throws IOException {
+        byte type = args.types[index];
+        char[] scratch = args.scratch;
+        switch (kind) {
+            case STRING:
+                if (type == Args.REF) {
+                    writeChars(args.refs[index], scratch, out);
+                } else if (type == Args.LONG) {
+                    int start = putLong(args.longs[index], scratch);
+                    out.write(scratch, start, scratch.length - start);
+                } else if (type == Args.BOOL) {
+                    out.write(args.longs[index] != 0 ? "true" : "false");
+                } else if (type == Args.CHAR) {
+                    out.write((char) args.longs[index]);
+                } else {
+                    out.write(String.valueOf(args.doubles[index]));
+                }
+                return;
+            case DECIMAL:
+                requireType(type, Args.LONG, index, "%d");
+                int start = putLong(args.longs[index], scratch);
+                out.write(scratch, start, scratch.length - start);
+                return;
+            case HEX:
+                requireType(type, Args.LONG, index, "%x");
+                int hexStart = putHex(args.longs[index], args.widths[index], scratch);
+                out.write(scratch, hexStart, scratch.length - hexStart);
+                return;
+            case CHAR:
+                requireType(type, Args.CHAR, index, "%c");
+                out.write((char) args.longs[index]);
+                return;
+            case BOOLEAN:
+                if (type == Args.REF) {
+                    out.write(args.refs[index] != null ? "true" : "false");
+                } else {
+                    requireType(type, Args.BOOL, index, "%b");
+                    out.write(args.longs[index] != 0 ? "true" : "false");
+                }
+                return;
+            case FLOAT:
+                double value;
+                if (type == Args.DOUBLE) {
+                    value = args.doubles[index];
+                } else {
+                    requireType(type, Args.LONG, index, "%f");
+                    value = args.longs[index];
+                }
+                putDouble(value, precision, scratch, out);
+                return;
+            default:
+                throw new IllegalStateException("Unknown specifier kind " + kind);
+        }
+    }
+
+    // ----- PRIVATE HELPER -----
+    private static void requireType(byte actual, byte expected, int index, String spec) {
+        if (actual != expected) {
+            throw new IllegalArgumentException("Argument " + index + " does not match " + spec);
+        }
+    }
+
+    private static void writeChars(Object value, char[] scratch, java.io.Writer out) throws IOException {
+        if (value instanceof String) {
+            out.write((String) value);
+            return;
+        }
+        if (!(value instanceof CharSequence)) {
+            out.write(String.valueOf(value));
+            return;
+        }
+        CharSequence chars = (CharSequence) value;
+        int length = chars.length();
+        int pos = 0;
+        while (pos < length) {
+            int n = Math.min(scratch.length, length - pos);
+            for (int i = 0; i < n; i++) {
+                scratch[i] = chars.charAt(pos + i);
+            }
+            out.write(scratch, 0, n);
+            pos += n;
+        }
+    }
+
+    /**
+     * Writes the decimal digits at the end of buf and returns the start index.
+     */
+    static int putLong(long value, char[] buf) {
+        int pos = buf.length;
+        boolean negative = value < 0;
+        if (!negative) {
+            value = -value;
+        }
+        // Work on the negative value so Long.MIN_VALUE needs no special case
+        do {
+            buf[--pos] = (char) ('0' - (value % 10));
+            value /= 10;
+        } while (value != 0);
+        if (negative) {
+            buf[--pos] = '-';
+        }
+        return pos;
+    }
+
+    private static int putHex(long value, int bits, char[] buf) {
+        if (bits < 64) {
+            value &= (1L << bits) - 1;
+        }
+        int pos = buf.length;
+        do {
+            buf[--pos] = Character.forDigit((int) (value & 0xF), 16);
+            value >>>= 4;
+        } while (value != 0);
+        return pos;
+    }
+
+    private static void putDouble(double value, int precision, char[] scratch,
+                                  java.io.Writer out) throws IOException {
+        double scale = POW10[precision];
+        if (Double.isNaN(value) || Double.isInfinite(value)
+                || Math.abs(value) * scale >= (double) (Long.MAX_VALUE / 2)) {
+            out.write(String.format(Locale.ROOT, "%." + precision + "f", value));
+            return;
+        }
+
+        long scaled = (long) Math.floor(Math.abs(value) * scale + 0.5);
+        long integer = scaled / POW10[precision];
+        long fraction = scaled % POW10[precision];
+
+        if ((Double.doubleToRawLongBits(value) & Long.MIN_VALUE) != 0) {
+            out.write('-');
+        }
+        int start = putLong(integer, scratch);
+        out.write(scratch, start, scratch.length - start);
+        if (precision > 0) {
+            out.write('.');
+            int pos = scratch.length;
+            for (int i = 0; i < precision; i++) {
+                scratch[--pos] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            out.write(scratch, pos, precision);
+        }
+    }
+
+    /**
+     * Reusable argument list for a template write.
+     * Primitives are stored unboxed; keep one instance per thread.
+     */
+    public static final class Args {
+        static final byte LONG = 0;
+        static final byte DOUBLE = 1;
+        static final byte BOOL = 2;
+        static final byte CHAR = 3;
+        static final byte REF = 4;
+
+        private byte[] types = new byte[8];
+        private long[] longs = new long[8];
+        // Bit width of integer arguments, for %x of negative values
+        private byte[] widths = new byte[8];
+        private double[] doubles = new double[8];
+        private Object[] refs = new Object[8];
+        private int size;
+        final char[] scratch = new char[64];
+
+        public Args clear() {
+            for (int i = 0; i < size; i++) {
+                refs[i] = null;
+            }
+            size = 0;
+            return this;
+        }
+
+        public Args add(long value) {
+            return addInteger(value, 64);
+        }
+
+        public Args add(int value) {
+            return addInteger(value, 32);
+        }
+
+        public Args add(double value) {
+            int i = slot(DOUBLE);
+            doubles[i] = value;
+            return this;
+        }
+
+        public Args add(boolean value) {
+            int i = slot(BOOL);
+            longs[i] = value ? 1 : 0;
+            return this;
+        }
+
+        public Args add(char value) {
+            int i = slot(CHAR);
+            longs[i] = value;
+            return this;
+        }
+
+        public Args add(CharSequence value) {
+            int i = slot(REF);
+            // Rendered as "null" by %s; %b gives false like String.format
+            refs[i] = value;
+            return this;
+        }
+
+        /**
+         * Adds a boxed argument, unboxing the usual wrapper types.
+         */
+        public Args addObject(Object value) {
+            if (value instanceof Long) {
+                return add(((Long) value).longValue());
+            }
+            if (value instanceof Integer) {
+                return add(((Integer) value).intValue());
+            }
+            if (value instanceof Short) {
+                return addInteger((Short) value, 16);
+            }
+            if (value instanceof Byte) {
+                return addInteger((Byte) value, 8);
+            }
+            if (value instanceof Double || value instanceof Float) {
+                return add(((Number) value).doubleValue());
+            }
+            if (value instanceof Boolean) {
+                return add(((Boolean) value).booleanValue());
+            }
+            if (value instanceof Character) {
+                return add(((Character) value).charValue());
+            }
+            int i = slot(REF);
+            refs[i] = value;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private Args addInteger(long value, int bits) {
+            int i = slot(LONG);
+            longs[i] = value;
+            widths[i] = (byte) bits;
+            return this;
+        }
+
+        private int slot(byte type) {
+            if (size == types.length) {
+                int grown = size * 2;
+                types = Arrays.copyOf(types, grown);
+                longs = Arrays.copyOf(longs, grown);
+                widths = Arrays.copyOf(widths, grown);
+                doubles = Arrays.copyOf(doubles, grown);
+                refs = Arrays.copyOf(refs, grown);
+            }
+            types[size] = type;
+            return size++;
+        }
+    }
+}
@@ -1,23 +1,73 @@
 package com.flsl.fileio;
 
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
 
 /**
- * Enhanced file writer with various writing strategies
+ * Enhanced file writer with various writing strategies.
+ * Paths ending in ".gz" are gzip-compressed by default (see Compression);
+ * setCompression(Compression.NONE) writes plain text to them.
  */
 public class Writer {
     private final File file;
     private BufferedWriter writer;
+    private FileOutputStream out;
+    private ParallelGzipOutputStream compressor;
     private boolean appendMode;
+    private final Charset charset;
+    private boolean autoFlush = false;
+    private boolean directEncoding = true;
+    private Compression compression = Compression.AUTO;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private boolean compressed;
+    
+    // Batches at least this large go through the direct channel encoder
+    private static final int DIRECT_THRESHOLD = 64;
+    
+    // Async mode settings, applied on open()
+    private boolean async = false;
+    private int queueCapacity = 8192;
+    private FlushPolicy flushPolicy = FlushPolicy.PER_BATCH;
+    private long flushIntervalMillis = 100;
+    private boolean fsync = false;
+    private Backpressure backpressure = Backpressure.BLOCK;
+    // Read without the lock by producer threads in async mode
+    private volatile AsyncFlusher flusher;
+    private long droppedCount = 0;
+    
+    /**
+     * When the background flusher of async mode flushes its buffer.
+     */
+    public enum FlushPolicy {
+        PER_BATCH,
+        INTERVAL,
+        NEVER
+    }
+    
+    /**
+     * What producers do when the async buffer is full.
+     */
+    public enum Backpressure {
+        BLOCK,
+        DROP
+    }
     
     public Writer(File file) {
         this(file, false);
     }
     
     public Writer(File file, boolean append) {
+        this(file, append, StandardCharsets.UTF_8);
+    }
+    
+    public Writer(File file, boolean append, Charset charset) {
         this.file = file;
         this.appendMode = append;
+        this.charset = charset;
     }
     
     public Writer(String filePath) {
@@ -28,8 +78,17 @@ public class Writer {
         this(new File(filePath), append);
     }
     
+    public Writer(String filePath, boolean append, Charset charset) {
+        this(new File(filePath), append, charset);
+    }
+    
     // ----- OPEN/CLOSE -----
-    public void open() throws IOException {
+    /**
+     * Opens (or reopens) the file. Writes open it on first use; open and
+     * close are synchronized so concurrent first writes in async mode
+     * share one file handle and one flusher thread.
+     */
+    public synchronized void open() throws IOException {
         close(); // Close if already open
         
         // Create parent directories if needed
@@ -38,40 +97,120 @@ public class Writer {
             new java.io.File(parent).mkdirs();
         }
         
-        writer = new BufferedWriter(
-            new OutputStreamWriter(
-                new FileOutputStream(file.getPath(), appendMode)
-            )
-        );
+        out = new FileOutputStream(file.getPath(), appendMode);
+        OutputStream sink = out;
+        compressed = compression.appliesTo(file.getPath());
+        if (compressed) {
+            // Appending adds a new gzip member, which readers concatenate
+            try {
+                compressor = new ParallelGzipOutputStream(out, compressionLevel,
+                    ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool());
+                sink = compressor;
+            } catch (IOException e) {
+                out.close();
+                out = null;
+                throw e;
+            }
+        }
+        if (async) {
+            writer = new BufferedWriter(FastCharsets.newWriter(sink, charset), 64 * 1024);
+            flusher = new AsyncFlusher(writer, out.getChannel(), file.getName(),
+                                       queueCapacity, flushPolicy, flushIntervalMillis,
+                                       fsync, backpressure);
+        } else {
+            writer = new BufferedWriter(FastCharsets.newWriter(sink, charset));
+        }
     }
     
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
         if (writer != null) {
-            writer.flush();
-            writer.close();
-            writer = null;
+            try {
+                if (flusher != null) {
+                    flusher.close();
+                }
+                writer.flush();
+                if (compressor != null) {
+                    // The trailer and last deflate block must be on disk before the fsync
+                    compressor.finish();
+                }
+                if (fsync) {
+                    out.getChannel().force(false);
+                }
+            } finally {
+                if (flusher != null) {
+                    droppedCount += flusher.getDroppedCount();
+                    flusher = null;
+                }
+                writer.close();
+                writer = null;
+                out = null;
+                compressor = null;
+            }
+        }
+    }
+    
+    /**
+     * Opens the file on first use. Returns the flusher in async mode, or
+     * null when writes go to the writer directly.
+     */
+    private AsyncFlusher ensureOpen() throws IOException {
+        AsyncFlusher active = flusher;
+        if (active != null) {
+            return active;
+        }
+        synchronized (this) {
+            if (writer == null) {
+                open();
+            }
+            return flusher;
         }
     }
     
     // ----- WRITING METHODS -----
     public void write(String text) throws IOException {
-        if (writer == null) open();
+        AsyncFlusher active = ensureOpen();
+        if (active != null) {
+            active.offer(text);
+            return;
+        }
         writer.write(text);
+        if (autoFlush) writer.flush();
     }
     
     public void writeLine(String line) throws IOException {
-        if (writer == null) open();
+        AsyncFlusher active = ensureOpen();
+        if (active != null) {
+            active.offer(line + System.lineSeparator());
+            return;
+        }
         writer.write(line);
         writer.newLine();
+        if (autoFlush) writer.flush();
     }
     
     public void writeLines(List<String> lines) throws IOException {
-        if (writer == null) open();
+        AsyncFlusher active = ensureOpen();
+        if (active != null) {
+            for (String line : lines) {
+                active.offer(line + System.lineSeparator());
+            }
+            return;
+        }
+        
+        if (directEncoding && !compressed && lines.size() >= DIRECT_THRESHOLD
+                && DirectLineEncoder.supports(charset)) {
+            // Keep ordering with text still sitting in the char buffer
+            writer.flush();
+            DirectLineEncoder.writeLines(out.getChannel(), lines, System.lineSeparator(),
+                                         charset, BufferPool.shared());
+            return;
+        }
         
         for (String line : lines) {
             writer.write(line);
             writer.newLine();
         }
+        if (autoFlush) writer.flush();
     }
     
     // ----- FORMATTED WRITING -----
@@ -83,6 +222,83 @@ public class Writer {
         writeLine(String.format(format, args));
     }
     
+    // ----- TEMPLATE WRITING -----
+    private static final ThreadLocal<Template.Args> TEMPLATE_ARGS =
+        ThreadLocal.withInitial(Template.Args::new);
+    
+    /**
+     * Precompiles a format pattern for the allocation-free write(Template, ...) methods.
+     */
+    public static Template compile(String pattern) {
+        return Template.compile(pattern);
+    }
+    
+    public void write(Template template) throws IOException {
+        write(template, TEMPLATE_ARGS.get().clear());
+    }
+    
+    public void write(Template template, long value) throws IOException {
+        write(template, TEMPLATE_ARGS.get().clear().add(value));
+    }
+    
+    public void write(Template template, int value) throws IOException {
+        write(template, TEMPLATE_ARGS.get().clear().add(value));
+    }
+    
+    public void write(Template template, double value) throws IOException {
+        write(template, TEMPLATE_ARGS.get().clear().add(value));
+    }
+    
+    public void write(Template template, CharSequence value) throws IOException {
+        write(template, TEMPLATE_ARGS.get().clear().add(value));
+    }
+    
+    public void write(Template template, CharSequence key, long value) throws IOException {
+        write(template, TEMPLATE_ARGS.get().clear().add(key).add(value));
+    }
+    
+    public void write(Template template, CharSequence key, int value) throws IOException {
+        write(template, TEMPLATE_ARGS.get().clear().add(key).add(value));
+    }
+    
+    public void write(Template template, CharSequence key, double value) throws IOException {
+        write(template, TEMPLATE_ARGS.get().clear().add(key).add(value));
+    }
+    
+    public void write(Template template, CharSequence key, CharSequence value) throws IOException {
+        write(template, TEMPLATE_ARGS.get().clear().add(key).add(value));
+    }
+    
+    public void write(Template template, long first, long second) throws IOException {
+        write(template, TEMPLATE_ARGS.get().clear().add(first).add(second));
+    }
+    
+    public void write(Template template, int first, int second) throws IOException {
+        write(template, TEMPLATE_ARGS.get().clear().add(first).add(second));
+    }
+    
+    public void write(Template template, Object... args) throws IOException {
+        Template.Args list = TEMPLATE_ARGS.get().clear();
+        for (Object arg : args) {
+            list.addObject(arg);
+        }
+        write(template, list);
+    }
+    
+    /**
+     * Writes the template with a caller-filled argument list, for arities
+     * the convenience overloads do not cover.
+     */
+    public void write(Template template, Template.Args args) throws IOException {
+        AsyncFlusher active = ensureOpen();
+        if (active != null) {
+            active.offer(template.format(args));
+            return;
+        }
+        template.render(args, writer);
+        if (autoFlush) writer.flush();
+    }
+    
     // ----- BULK OPERATIONS -----
     public void writeAll(String content) throws IOException {
         open();
@@ -97,18 +313,130 @@ public class Writer {
     }
     
     // ----- FLUSH CONTROL -----
+    /**
+     * Flushes buffered text. In async mode this waits until everything
+     * written before the call has reached the file.
+     */
     public void flush() throws IOException {
-        if (writer != null) {
+        AsyncFlusher active = flusher;
+        if (active != null) {
+            active.flush();
+        } else if (writer != null) {
             writer.flush();
+            if (fsync) {
+                out.getChannel().force(false);
+            }
         }
     }
     
+    /**
+     * Flushes after every write in synchronous mode.
+     */
     public void setAutoFlush(boolean autoFlush) throws IOException {
+        this.autoFlush = autoFlush;
         if (autoFlush && writer != null) {
-            writer.flush();
+            flush();
         }
     }
     
+    public Charset getCharset() {
+        return charset;
+    }
+    
+    public boolean isAutoFlush() {
+        return autoFlush;
+    }
+    
+    /**
+     * Lets large writeLines batches bypass the char buffers and go to the
+     * file channel as gathering writes of directly encoded bytes.
+     */
+    public void setDirectEncoding(boolean directEncoding) {
+        this.directEncoding = directEncoding;
+    }
+    
+    public boolean isDirectEncoding() {
+        return directEncoding;
+    }
+    
+    // ----- COMPRESSION -----
+    /**
+     * Selects gzip output, compressed in parallel blocks. The default AUTO
+     * compresses paths ending in ".gz". Takes effect on the next open().
+     * Compressed output skips the direct channel encoder.
+     */
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+    
+    public Compression getCompression() {
+        return compression;
+    }
+    
+    /**
+     * Deflate level 0-9, or -1 for the zlib default.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < -1 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+    
+    // ----- ASYNC MODE -----
+    /**
+     * Enables group-commit mode: writes are queued in a bounded buffer and
+     * a background thread writes them in batches. Takes effect on the next
+     * open().
+     */
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+    
+    public boolean isAsync() {
+        return async;
+    }
+    
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+    
+    public void setFlushPolicy(FlushPolicy flushPolicy) {
+        this.flushPolicy = flushPolicy;
+    }
+    
+    /**
+     * Interval used by FlushPolicy.INTERVAL.
+     */
+    public void setFlushInterval(long flushIntervalMillis) {
+        if (flushIntervalMillis < 1) {
+            throw new IllegalArgumentException("Flush interval must be positive: " + flushIntervalMillis);
+        }
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+    
+    /**
+     * Forces data to disk (fsync) on every flush.
+     */
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+    
+    public void setBackpressure(Backpressure backpressure) {
+        this.backpressure = backpressure;
+    }
+    
+    /**
+     * Writes dropped because the async buffer was full (Backpressure.DROP).
+     */
+    public long getDroppedCount() {
+        AsyncFlusher active = flusher;
+        return droppedCount + (active != null ? active.getDroppedCount() : 0);
+    }
+    
     // ----- AUTO-CLOSE PATTERN -----
     public interface WriteOperation {
         void execute(Writer writer) throws IOException;
@@ -129,4 +457,4 @@ public class Writer {
             writer.close();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,524 @@
+package com.flsl.flog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Long-lived append handle for one log file.
+ * Any number of threads enqueue records on a lock-free queue; a single
+ * writer thread keeps the file open, drains the queue and writes each
+ * batch with one channel write. Threads that append at the same time
+ * share one write, so the per-record cost is an enqueue instead of an
+ * open/write/close.
+ * 
+ * Binary (".flb") files take records instead of lines. The writer thread
+ * encodes them, so the file's key dictionary is only touched by one thread;
+ * opening such a file scans it once to pick up the dictionary.
+ * 
+ * The file stays open, so outside rotation is detected instead: before a
+ * batch, at most once per second, the writer checks the path. A renamed
+ * or deleted file (logrotate's default) is replaced by a new file at the
+ * path; a file truncated in place (copytruncate) is continued at its new
+ * end. Records written in the second before the check still go to the
+ * old file; a rotation script that needs an exact cut calls closeAll()
+ * and the next append reopens the path.
+ */
+public final class FAppender implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BATCH = 4096;
+    private static final long ROTATION_CHECK_MILLIS = 1000;
+    
+    private static final ConcurrentHashMap<Path, FAppender> APPENDERS = new ConcurrentHashMap<>();
+    
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(FAppender::closeAll, "flsl-flog-shutdown"));
+    }
+    
+    private final Path path;
+    // Replaced by the writer thread when the file was rotated
+    private FileChannel channel;
+    private Object fileKey;
+    private long lastRotationCheck;
+    private final Thread writerThread;
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final boolean binary;
+    private FBinaryLog.Encoder encoder;
+    
+    private volatile long offset;
+    private FTimeIndex.Updater timeIndex;
+    private boolean timeIndexDisabled;
+    private volatile boolean closed;
+    // Set by the writer thread before its last look at the queue
+    private volatile boolean stopped;
+    private volatile IOException asyncFailure;
+    
+    /** One queued line or binary record, or a flush marker when both are null. */
+    private static final class Entry {
+        final byte[] bytes;
+        final FBinaryLog.Record record;
+        final long time;
+        final Thread waiter;
+        volatile boolean done;
+        IOException failure;
+        
+        Entry(byte[] bytes, FBinaryLog.Record record, long time, Thread waiter) {
+            this.bytes = bytes;
+            this.record = record;
+            this.time = time;
+            this.waiter = waiter;
+        }
+    }
+    
+    private FAppender(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.binary = path.getFileName().toString().endsWith(FBinaryLog.EXTENSION);
+        try {
+            if (binary) {
+                openBinary();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.offset = channel.size();
+        this.fileKey = fileKeyOf(path);
+        this.lastRotationCheck = System.currentTimeMillis();
+        this.writerThread = new Thread(this::run, "flsl-flog-" + path.getFileName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+    
+    // ----- REGISTRY -----
+    /**
+     * Returns the shared appender of the file, opening it on first use.
+     */
+    public static FAppender forFile(File file) throws IOException {
+        Path key = file.getAbsoluteFile().toPath().normalize();
+        FAppender appender = APPENDERS.get(key);
+        if (appender != null && !appender.closed) {
+            return appender;
+        }
+        synchronized (APPENDERS) {
+            appender = APPENDERS.get(key);
+            if (appender == null || appender.closed) {
+                appender = new FAppender(key);
+                APPENDERS.put(key, appender);
+            }
+            return appender;
+        }
+    }
+    
+    /**
+     * Flushes and closes every open appender.
+     */
+    public static void closeAll() {
+        List<FAppender> open = new ArrayList<>(APPENDERS.values());
+        for (FAppender appender : open) {
+            try {
+                appender.close();
+            } catch (IOException e) {
+                // Keep closing the others
+            }
+        }
+    }
+    
+    // ----- APPENDING -----
+    /**
+     * Appends the line plus the line separator and returns once it is in
+     * the file (not necessarily on disk). Binary files take records only;
+     * the line methods throw IllegalArgumentException for them.
+     */
+    public void append(String line) throws IOException {
+        append(line, -1);
+    }
+    
+    /**
+     * Appends a record stamped with the time, which also goes into the
+     * file's time index (FTimeIndex). A negative time means unstamped.
+     */
+    public void append(String line, long timeMillis) throws IOException {
+        Entry entry = new Entry(encode(line), null, timeMillis, Thread.currentThread());
+        enqueue(entry);
+        await(entry);
+    }
+    
+    /**
+     * Appends without waiting. A write error is reported by the next flush();
+     * a record that can no longer be written because the appender was
+     * closed fails here.
+     */
+    public void appendAsync(String line) throws IOException {
+        appendAsync(line, -1);
+    }
+    
+    public void appendAsync(String line, long timeMillis) throws IOException {
+        enqueue(new Entry(encode(line), null, timeMillis, null));
+    }
+    
+    /**
+     * Appends a record and returns once it is in the file. A binary file
+     * stores it encoded; a text file gets the line FWrite would write.
+     * The time goes into the time index; negative means unindexed.
+     */
+    public void appendRecord(FBinaryLog.Record record, long timeMillis) throws IOException {
+        Entry entry = binary
+            ? new Entry(null, record, timeMillis, Thread.currentThread())
+            : new Entry(encode(record.toLine()), null, timeMillis, Thread.currentThread());
+        enqueue(entry);
+        await(entry);
+    }
+    
+    public void appendRecordAsync(FBinaryLog.Record record, long timeMillis) throws IOException {
+        enqueue(binary
+            ? new Entry(null, record, timeMillis, null)
+            : new Entry(encode(record.toLine()), null, timeMillis, null));
+    }
+    
+    /**
+     * Waits until everything appended before the call is in the file.
+     */
+    public void flush() throws IOException {
+        Entry marker = new Entry(null, null, -1, Thread.currentThread());
+        enqueue(marker);
+        await(marker);
+        IOException failure = asyncFailure;
+        if (failure != null) {
+            asyncFailure = null;
+            throw failure;
+        }
+    }
+    
+    /**
+     * File size after the last completed write.
+     */
+    public long getOffset() {
+        return offset;
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    /**
+     * True for ".flb" files, which take records, not lines.
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+    
+    // ----- CLOSE -----
+    /**
+     * Writes what is queued, stops the writer thread and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (APPENDERS) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            APPENDERS.remove(path, this);
+        }
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing " + path, e);
+        } finally {
+            try {
+                if (timeIndex != null) {
+                    timeIndex.close();
+                }
+            } finally {
+                channel.close();
+            }
+        }
+        IOException failure = asyncFailure;
+        if (failure != null) {
+            asyncFailure = null;
+            throw failure;
+        }
+    }
+    
+    // ----- PRIVATE HELPER -----
+    private static byte[] encode(String line) {
+        return (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private void enqueue(Entry entry) throws IOException {
+        if (binary && entry.bytes != null) {
+            throw new IllegalArgumentException("Binary flog files take records, not lines: " + path);
+        }
+        if (closed) {
+            throw new IOException("Appender is closed: " + path);
+        }
+        queue.offer(entry);
+        LockSupport.unpark(writerThread);
+        if (stopped && queue.remove(entry)) {
+            // Raced with close(): the writer thread has taken its last entries
+            throw new IOException("Appender is closed: " + path);
+        }
+    }
+    
+    /**
+     * The writer thread completes every entry it takes, also when it stops,
+     * so waiting needs no timeout.
+     */
+    private void await(Entry entry) throws IOException {
+        boolean interrupted = false;
+        while (!entry.done) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (entry.failure != null) {
+            throw entry.failure;
+        }
+    }
+    
+    private void run() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (true) {
+                Entry entry;
+                while (batch.size() < MAX_BATCH && (entry = queue.poll()) != null) {
+                    batch.add(entry);
+                }
+                if (batch.isEmpty()) {
+                    if (stopped) {
+                        break;
+                    }
+                    if (closed) {
+                        // One more pass for entries that raced with close(); later ones are refused
+                        stopped = true;
+                        continue;
+                    }
+                    // enqueue() and close() unpark; a permit given before parking is kept
+                    LockSupport.park(this);
+                    continue;
+                }
+                
+                IOException failure = null;
+                try {
+                    writeBatch(batch);
+                } catch (IOException e) {
+                    failure = e;
+                    buffer.clear();
+                    // The dictionary may hold keys that never reached the file
+                    encoder = null;
+                }
+                complete(batch, failure);
+                batch.clear();
+            }
+        } finally {
+            stopped = true;
+            // Only reached with entries left when the thread failed unexpectedly
+            IOException failure = new IOException("Appender stopped before the write completed: " + path);
+            complete(batch, failure);
+            batch.clear();
+            Entry entry;
+            while ((entry = queue.poll()) != null) {
+                batch.add(entry);
+            }
+            complete(batch, failure);
+        }
+    }
+    
+    private void complete(List<Entry> batch, IOException failure) {
+        for (Entry done : batch) {
+            if (done.done) {
+                continue;
+            }
+            done.failure = failure;
+            done.done = true;
+            if (done.waiter != null) {
+                LockSupport.unpark(done.waiter);
+            } else if (failure != null) {
+                asyncFailure = failure;
+            }
+        }
+    }
+    
+    private void writeBatch(List<Entry> batch) throws IOException {
+        checkRotation();
+        if (binary && encoder == null) {
+            openBinary();
+            offset = channel.size();
+        }
+        for (Entry entry : batch) {
+            ByteBuffer bytes;
+            if (entry.record != null) {
+                bytes = encoder.encode(entry.record);
+            } else if (entry.bytes != null) {
+                bytes = ByteBuffer.wrap(entry.bytes);
+            } else {
+                continue;
+            }
+            if (bytes.remaining() > buffer.remaining()) {
+                writeBuffer();
+            }
+            long recordOffset = offset + buffer.position();
+            if (bytes.remaining() > buffer.capacity()) {
+                write(bytes);
+            } else {
+                buffer.put(bytes);
+            }
+            if (entry.time >= 0) {
+                indexRecord(entry.time, recordOffset);
+            }
+        }
+        writeBuffer();
+        
+        if (timeIndex != null) {
+            try {
+                timeIndex.flush();
+            } catch (IOException e) {
+                disableTimeIndex();
+            }
+        }
+    }
+    
+    /**
+     * Follows outside rotation, at most once per ROTATION_CHECK_MILLIS.
+     */
+    private void checkRotation() throws IOException {
+        long now = System.currentTimeMillis();
+        if (now - lastRotationCheck < ROTATION_CHECK_MILLIS) {
+            return;
+        }
+        lastRotationCheck = now;
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            attributes = null;
+        }
+        if (attributes == null || (fileKey != null && !fileKey.equals(attributes.fileKey()))) {
+            // Renamed or deleted: continue in a new file at the path
+            FileChannel previous = channel;
+            channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                                       StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            previous.close();
+            fileKey = fileKeyOf(path);
+        } else if (attributes.size() >= offset) {
+            return;
+        }
+        // New or truncated file: offsets, sidecar and dictionary start over
+        offset = channel.size();
+        resetTimeIndex();
+        if (binary) {
+            encoder = null;
+        }
+    }
+    
+    private static Object fileKeyOf(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+    
+    private void resetTimeIndex() {
+        try {
+            if (timeIndex != null) {
+                timeIndex.close();
+            }
+            Files.deleteIfExists(FTimeIndex.sidecarOf(path));
+        } catch (IOException e) {
+            // A stale sidecar points past the new file's end and is rebuilt by readers
+        }
+        timeIndex = null;
+        timeIndexDisabled = false;
+    }
+    
+    /**
+     * The time index is an optimization: when it cannot be maintained it
+     * is dropped (readers rebuild it) and the log itself keeps working.
+     */
+    private void indexRecord(long time, long recordOffset) {
+        if (timeIndexDisabled) {
+            return;
+        }
+        try {
+            if (timeIndex == null) {
+                timeIndex = FTimeIndex.Updater.open(path);
+            }
+            timeIndex.record(time, recordOffset);
+        } catch (IOException e) {
+            disableTimeIndex();
+        }
+    }
+    
+    private void disableTimeIndex() {
+        timeIndexDisabled = true;
+        try {
+            if (timeIndex != null) {
+                timeIndex.close();
+            }
+            Files.deleteIfExists(FTimeIndex.sidecarOf(path));
+        } catch (IOException e) {
+            // A partial sidecar only holds real record offsets and stays usable
+        }
+        timeIndex = null;
+    }
+    
+    /**
+     * Picks up the key dictionary of an existing binary file, cutting off
+     * a frame left incomplete by a crash, or writes the header of a new one.
+     */
+    private void openBinary() throws IOException {
+        FBinaryLog.Encoder fresh = new FBinaryLog.Encoder();
+        if (channel.size() == 0) {
+            write(ByteBuffer.wrap(FBinaryLog.Encoder.header()));
+        } else {
+            try (FBinaryReader reader = new FBinaryReader(path)) {
+                while (reader.next() != null) {
+                    // Only the dictionary is needed
+                }
+                for (String key : reader.getKeys()) {
+                    fresh.addKey(key);
+                }
+                if (reader.getPosition() < channel.size()) {
+                    channel.truncate(reader.getPosition());
+                }
+            }
+        }
+        encoder = fresh;
+    }
+    
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+    
+    private void write(ByteBuffer bytes) throws IOException {
+        long written = 0;
+        while (bytes.hasRemaining()) {
+            written += channel.write(bytes);
+        }
+        offset += written;
+    }
+}
@@ -0,0 +1,385 @@
+package com.flsl.flog;
+
+import com.flsl.fileio.Reader;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binary flog format, used for files ending in ".flb".
+ * Key names are written once per file in a dictionary and records refer
+ * to them by number; values keep their type (bool, int, long, double,
+ * string) instead of being rendered as text.
+ *
+ * Layout: a 5-byte header ("FLB1", version), then frames. A KEY frame
+ * (tag, varint id, name) defines the next key id the first time a key is
+ * written. A RECORD frame is the tag, the body length as a varint, and the
+ * body: a flags byte, the time and sequence when present, the field count,
+ * then per field a key id, a type byte and the value. Bits 2-4 of the
+ * flags hold the timestamp format plus one (0: not recorded), so a record
+ * renders back with the precision it was written with. Every file carries
+ * its own dictionary, so files (and log segments) can be read on their own.
+ * Varints and strings use the RecordReader encoding.
+ */
+public final class FBinaryLog {
+    public static final String EXTENSION = ".flb";
+    
+    static final int MAGIC = 0x464C4231; // "FLB1"
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 5;
+    
+    static final byte FRAME_KEY = 1;
+    static final byte FRAME_RECORD = 2;
+    
+    static final int FLAG_TIME = 1;
+    static final int FLAG_SEQUENCE = 2;
+    static final int FORMAT_SHIFT = 2;
+    static final int FORMAT_MASK = 7;
+    
+    static final byte TYPE_NULL = 0;
+    static final byte TYPE_FALSE = 1;
+    static final byte TYPE_TRUE = 2;
+    static final byte TYPE_INT = 3;
+    static final byte TYPE_LONG = 4;
+    static final byte TYPE_DOUBLE = 5;
+    static final byte TYPE_STRING = 6;
+    
+    private static final FTimestamp PARSER = new FTimestamp(FTimestamp.Format.MINUTE);
+    // One renderer per format for Record.toLine()
+    private static final FTimestamp[] STAMPS = new FTimestamp[FTimestamp.Format.values().length];
+    
+    static {
+        for (FTimestamp.Format format : FTimestamp.Format.values()) {
+            STAMPS[format.ordinal()] = new FTimestamp(format);
+        }
+    }
+    
+    private FBinaryLog() {
+    }
+    
+    public static boolean isBinary(File file) {
+        return file.getName().endsWith(EXTENSION);
+    }
+    
+    // ----- RECORD -----
+    /**
+     * One decoded record. Field values are Boolean, Integer, Long, Double,
+     * String or null.
+     */
+    public static final class Record {
+        private final long time;
+        private final long sequence;
+        private final FTimestamp.Format format;
+        private final Map<String, Object> fields;
+        
+        /**
+         * A negative time or sequence means the record has none.
+         */
+        public Record(long time, long sequence, Map<String, ?> fields) {
+            this(time, sequence, null, fields);
+        }
+        
+        /**
+         * A record whose timestamp renders in the given format; null uses
+         * FWrite's current format.
+         */
+        public Record(long time, long sequence, FTimestamp.Format format, Map<String, ?> fields) {
+            this.time = time;
+            this.sequence = sequence;
+            this.format = format;
+            this.fields = Collections.unmodifiableMap(new LinkedHashMap<String, Object>(fields));
+        }
+        
+        public long getTime() {
+            return time;
+        }
+        
+        public long getSequence() {
+            return sequence;
+        }
+        
+        public FTimestamp.Format getTimestampFormat() {
+            return format;
+        }
+        
+        public Map<String, Object> getFields() {
+            return fields;
+        }
+        
+        /**
+         * The fields as FRead returns them: strings, yes/no read as true/false.
+         */
+        public Map<String, String> toStringMap() {
+            Map<String, String> result = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> field : fields.entrySet()) {
+                result.put(field.getKey(), FRead.normalizeValue(String.valueOf(field.getValue())));
+            }
+            return result;
+        }
+        
+        /**
+         * Renders the record as a text flog line, in its own timestamp
+         * format or else FWrite's.
+         */
+        public String toLine() {
+            if (format == null) {
+                return FWrite.formatLine(fields, time, sequence);
+            }
+            return FWrite.formatLine(fields, time, sequence, STAMPS[format.ordinal()]);
+        }
+    }
+    
+    // ----- CONVERSION -----
+    /**
+     * Converts a text flog file (optionally gzipped) to the binary format.
+     * Values that read back to the same text become typed: canonical
+     * numbers, true and false. Each record keeps its timestamp format.
+     * Lines without a record are skipped.
+     *
+     * @return The number of records written.
+     */
+    public static long toBinary(File text, File binary) throws IOException {
+        long[] count = new long[1];
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(binary.toPath()), 64 * 1024)) {
+            Encoder encoder = new Encoder();
+            encoder.writeHeader(out);
+            new Reader(text.getPath()).forEachLine(line -> {
+                String record = line.toString().trim();
+                Map<String, String> values = FRead.parseFields(record);
+                if (values.isEmpty()) {
+                    return;
+                }
+                Map<String, Object> fields = new LinkedHashMap<>();
+                for (Map.Entry<String, String> value : values.entrySet()) {
+                    fields.put(value.getKey(), typedValue(value.getValue()));
+                }
+                long time = PARSER.parse(record);
+                FTimestamp.Format format = time >= 0 ? FTimestamp.formatOf(record) : null;
+                encoder.encode(new Record(time, FTimestamp.parseSequence(record), format, fields));
+                encoder.writeTo(out);
+                count[0]++;
+            });
+        }
+        return count[0];
+    }
+    
+    /**
+     * Converts a binary flog file to text lines, one per record.
+     *
+     * @return The number of records written.
+     */
+    public static long toText(File binary, File text) throws IOException {
+        long count = 0;
+        try (FBinaryReader reader = new FBinaryReader(binary.toPath());
+             BufferedWriter out = Files.newBufferedWriter(text.toPath(), StandardCharsets.UTF_8)) {
+            Record record;
+            while ((record = reader.next()) != null) {
+                out.write(record.toLine());
+                out.newLine();
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Picks the narrowest type that renders back to exactly the same text.
+     */
+    static Object typedValue(String text) {
+        if ("true".equals(text) || "false".equals(text)) {
+            return Boolean.valueOf(text);
+        }
+        if ("null".equals(text)) {
+            return null;
+        }
+        if (text.isEmpty() || text.length() > 24) {
+            return text;
+        }
+        char first = text.charAt(0);
+        if ((first < '0' || first > '9') && first != '-') {
+            return text;
+        }
+        try {
+            long value = Long.parseLong(text);
+            if (Long.toString(value).equals(text)) {
+                return value == (int) value ? (Object) (int) value : (Object) value;
+            }
+            return text;
+        } catch (NumberFormatException e) {
+            // Not an integer; try a double below
+        }
+        try {
+            double value = Double.parseDouble(text);
+            return Double.toString(value).equals(text) ? (Object) value : text;
+        } catch (NumberFormatException e) {
+            return text;
+        }
+    }
+    
+    // ----- ENCODING -----
+    /**
+     * Encodes records into a reusable buffer and keeps the key dictionary
+     * of one file. Not thread-safe: each file has one encoder, used by the
+     * thread that writes the file.
+     */
+    static final class Encoder {
+        private final Map<String, Integer> keys = new HashMap<>();
+        private byte[] buffer = new byte[256];
+        private int length;
+        private byte[] body = new byte[256];
+        private int bodyLength;
+        
+        /**
+         * Continues the dictionary of an existing file.
+         */
+        void addKey(String key) {
+            keys.put(key, keys.size());
+        }
+        
+        void writeHeader(OutputStream out) throws IOException {
+            out.write(header());
+        }
+        
+        static byte[] header() {
+            return new byte[] {
+                (byte) (MAGIC >>> 24), (byte) (MAGIC >>> 16), (byte) (MAGIC >>> 8), (byte) MAGIC, VERSION
+            };
+        }
+        
+        /**
+         * Encodes the KEY frames of new keys followed by the RECORD frame.
+         * The returned view of the buffer is valid until the next call.
+         */
+        ByteBuffer encode(Record record) {
+            length = 0;
+            bodyLength = 0;
+            int flags = (record.time >= 0 ? FLAG_TIME : 0) | (record.sequence >= 0 ? FLAG_SEQUENCE : 0);
+            if (record.format != null) {
+                flags |= (record.format.ordinal() + 1) << FORMAT_SHIFT;
+            }
+            putBody((byte) flags);
+            if (record.time >= 0) {
+                putBodyVarLong(record.time);
+            }
+            if (record.sequence >= 0) {
+                putBodyVarLong(record.sequence);
+            }
+            putBodyVarLong(record.fields.size());
+            for (Map.Entry<String, Object> field : record.fields.entrySet()) {
+                putBodyVarLong(keyId(field.getKey()));
+                putValue(field.getValue());
+            }
+            put(FRAME_RECORD);
+            putVarLong(bodyLength);
+            put(body, 0, bodyLength);
+            return ByteBuffer.wrap(buffer, 0, length);
+        }
+        
+        void writeTo(OutputStream out) throws IOException {
+            out.write(buffer, 0, length);
+        }
+        
+        private int keyId(String key) {
+            Integer id = keys.get(key);
+            if (id != null) {
+                return id;
+            }
+            int next = keys.size();
+            keys.put(key, next);
+            byte[] name = key.getBytes(StandardCharsets.UTF_8);
+            put(FRAME_KEY);
+            putVarLong(next);
+            putVarLong(name.length);
+            put(name, 0, name.length);
+            return next;
+        }
+        
+        private void putValue(Object value) {
+            if (value == null) {
+                putBody(TYPE_NULL);
+            } else if (value instanceof Boolean) {
+                putBody((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+            } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                putBody(TYPE_INT);
+                putBodyVarLong(zigzag(((Number) value).intValue()));
+            } else if (value instanceof Long) {
+                putBody(TYPE_LONG);
+                putBodyVarLong(zigzag((Long) value));
+            } else if (value instanceof Double || value instanceof Float) {
+                // Widen a float through its text so it still renders the same
+                double number = value instanceof Float
+                    ? Double.parseDouble(value.toString()) : (Double) value;
+                putBody(TYPE_DOUBLE);
+                long bits = Double.doubleToLongBits(number);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    putBody((byte) (bits >>> shift));
+                }
+            } else {
+                byte[] text = value.toString().getBytes(StandardCharsets.UTF_8);
+                putBody(TYPE_STRING);
+                putBodyVarLong(text.length);
+                ensureBody(text.length);
+                System.arraycopy(text, 0, body, bodyLength, text.length);
+                bodyLength += text.length;
+            }
+        }
+        
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+        
+        private void put(byte value) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, length * 2);
+            }
+            buffer[length++] = value;
+        }
+        
+        private void put(byte[] bytes, int offset, int count) {
+            if (length + count > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(length + count, buffer.length * 2));
+            }
+            System.arraycopy(bytes, offset, buffer, length, count);
+            length += count;
+        }
+        
+        private void putVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            put((byte) value);
+        }
+        
+        private void putBody(byte value) {
+            ensureBody(1);
+            body[bodyLength++] = value;
+        }
+        
+        private void putBodyVarLong(long value) {
+            ensureBody(10);
+            while ((value & ~0x7FL) != 0) {
+                body[bodyLength++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            body[bodyLength++] = (byte) value;
+        }
+        
+        private void ensureBody(int count) {
+            if (bodyLength + count > body.length) {
+                body = Arrays.copyOf(body, Math.max(bodyLength + count, body.length * 2));
+            }
+        }
+    }
+}
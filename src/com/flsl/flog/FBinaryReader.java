@@ -0,0 +1,217 @@
+package com.flsl.flog;
+
+import com.flsl.fileio.RecordReader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the records of a binary (".flb") flog file in file order.
+ * The file is mapped, so seek() is cheap; a seek also picks up the key
+ * dictionary defined before the target offset by skipping over the
+ * records in between. A frame cut short by a crash ends the file.
+ */
+public class FBinaryReader implements AutoCloseable {
+    
+    private final RecordReader in;
+    private final List<String> keys = new ArrayList<>();
+    private long keysScannedTo;
+    
+    public FBinaryReader(Path path) throws IOException {
+        this.in = new RecordReader(path, true);
+        try {
+            if (in.size() < FBinaryLog.HEADER_SIZE || in.getInt() != FBinaryLog.MAGIC) {
+                throw new IOException("Not a binary flog file: " + path);
+            }
+            byte version = in.getByte();
+            if (version != FBinaryLog.VERSION) {
+                throw new IOException("Unsupported binary flog version " + version + ": " + path);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        this.keysScannedTo = in.position();
+    }
+    
+    // ----- READING -----
+    /**
+     * Returns the next record, or null at the end of the file.
+     */
+    public FBinaryLog.Record next() throws IOException {
+        while (in.hasRemaining()) {
+            long frameStart = in.position();
+            FBinaryLog.Record record = null;
+            try {
+                byte tag = in.getByte();
+                if (tag == FBinaryLog.FRAME_KEY) {
+                    readKey(frameStart);
+                } else if (tag == FBinaryLog.FRAME_RECORD) {
+                    int length = in.getVarInt();
+                    if (length < 0) {
+                        throw new IOException("Corrupt record length at offset " + frameStart);
+                    }
+                    if (length > in.size() - in.position()) {
+                        throw new EOFException();
+                    }
+                    record = readRecord(frameStart, in.position() + length);
+                } else {
+                    throw new IOException("Corrupt binary flog frame at offset " + frameStart);
+                }
+            } catch (EOFException e) {
+                // Incomplete last frame: stop in front of it
+                in.seek(frameStart);
+                return null;
+            }
+            // Frames are read back to back from a scanned offset
+            keysScannedTo = Math.max(keysScannedTo, in.position());
+            if (record != null) {
+                return record;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Offset of the next frame; the end of the readable data once next()
+     * has returned null.
+     */
+    public long getPosition() {
+        return in.position();
+    }
+    
+    /**
+     * Moves to a frame start, such as an offset from FTimeIndex or
+     * getPosition().
+     */
+    public void seek(long offset) throws IOException {
+        if (offset < FBinaryLog.HEADER_SIZE) {
+            offset = FBinaryLog.HEADER_SIZE;
+        }
+        if (offset > keysScannedTo) {
+            // Learn the keys defined before the offset without decoding records
+            in.seek(keysScannedTo);
+            while (in.position() < offset) {
+                long frameStart = in.position();
+                byte tag = in.getByte();
+                if (tag == FBinaryLog.FRAME_KEY) {
+                    readKey(frameStart);
+                } else if (tag == FBinaryLog.FRAME_RECORD) {
+                    int length = in.getVarInt();
+                    if (length < 0 || length > in.size() - in.position()) {
+                        throw new IOException("Corrupt record length at offset " + frameStart);
+                    }
+                    in.seek(in.position() + length);
+                } else {
+                    throw new IOException("Corrupt binary flog frame at offset " + frameStart);
+                }
+            }
+            if (in.position() != offset) {
+                throw new IllegalArgumentException("Offset is not a frame start: " + offset);
+            }
+            keysScannedTo = offset;
+        }
+        in.seek(offset);
+    }
+    
+    /**
+     * The key names in dictionary order, as far as the file has been read.
+     */
+    public List<String> getKeys() {
+        return new ArrayList<>(keys);
+    }
+    
+    // ----- CLOSE -----
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+    
+    // ----- PRIVATE HELPER -----
+    private void readKey(long frameStart) throws IOException {
+        int id = in.getVarInt();
+        String name = in.getString();
+        if (id < keys.size()) {
+            // Already learned by a seek past this frame
+            return;
+        }
+        if (id != keys.size()) {
+            throw new IOException("Key out of order at offset " + frameStart);
+        }
+        keys.add(name);
+    }
+    
+    /**
+     * Decodes a record body, which must end exactly at frameEnd. The body
+     * is known to be complete, so running out of data means corruption.
+     */
+    private FBinaryLog.Record readRecord(long frameStart, long frameEnd) throws IOException {
+        try {
+            int flags = in.getByte();
+            long time = (flags & FBinaryLog.FLAG_TIME) != 0 ? in.getVarLong() : -1;
+            long sequence = (flags & FBinaryLog.FLAG_SEQUENCE) != 0 ? in.getVarLong() : -1;
+            FTimestamp.Format format = formatOf(flags, frameStart);
+            int count = in.getVarInt();
+            if (count < 0 || count > frameEnd - in.position()) {
+                throw new IOException("Corrupt field count at offset " + frameStart);
+            }
+            Map<String, Object> fields = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                int id = in.getVarInt();
+                if (id < 0 || id >= keys.size()) {
+                    throw new IOException("Undefined key " + id + " at offset " + in.position());
+                }
+                fields.put(keys.get(id), readValue());
+            }
+            if (in.position() != frameEnd) {
+                throw new IOException("Record at offset " + frameStart + " does not match its length");
+            }
+            return new FBinaryLog.Record(time, sequence, format, fields);
+        } catch (EOFException e) {
+            throw new IOException("Corrupt record at offset " + frameStart, e);
+        }
+    }
+    
+    /**
+     * The timestamp format stored in the flags; null in files written
+     * before formats were recorded.
+     */
+    private static FTimestamp.Format formatOf(int flags, long frameStart) throws IOException {
+        int code = (flags >>> FBinaryLog.FORMAT_SHIFT) & FBinaryLog.FORMAT_MASK;
+        if (code == 0) {
+            return null;
+        }
+        FTimestamp.Format[] formats = FTimestamp.Format.values();
+        if (code > formats.length) {
+            throw new IOException("Unknown timestamp format " + code + " at offset " + frameStart);
+        }
+        return formats[code - 1];
+    }
+    
+    private Object readValue() throws IOException {
+        byte type = in.getByte();
+        switch (type) {
+            case FBinaryLog.TYPE_NULL:
+                return null;
+            case FBinaryLog.TYPE_FALSE:
+                return Boolean.FALSE;
+            case FBinaryLog.TYPE_TRUE:
+                return Boolean.TRUE;
+            case FBinaryLog.TYPE_INT:
+                return in.getSignedVarInt();
+            case FBinaryLog.TYPE_LONG:
+                return in.getSignedVarLong();
+            case FBinaryLog.TYPE_DOUBLE:
+                return in.getDouble();
+            case FBinaryLog.TYPE_STRING:
+                return in.getString();
+            default:
+                throw new IOException("Unknown value type " + type + " at offset " + in.position());
+        }
+    }
+}
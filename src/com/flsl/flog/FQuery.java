@@ -0,0 +1,568 @@
+package com.flsl.flog;
+
+import com.flsl.fileio.Reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Filters and projects the records of a flog file, or of several files
+ * read as one log.
+ * Records are parsed with the same rules as FRead ("[key = value, ...]",
+ * yes/no read as true/false) and returned as maps in file order. Lines
+ * are tested through a reused FRecordView, so only matching records are
+ * turned into maps. forEach()
+ * and stream() walk the file lazily; list() and count() split the file into
+ * newline-aligned chunks and scan them in parallel. Binary (".flb") files
+ * are decoded sequentially.
+ * 
+ * <pre>
+ * List&lt;Map&lt;String, String&gt;&gt; errors = FQuery.on(file)
+ *     .where("status", "error")
+ *     .select("time", "message")
+ *     .list();
+ * </pre>
+ */
+public class FQuery {
+    
+    public interface RecordHandler {
+        void handle(Map<String, String> record) throws IOException;
+    }
+    
+    private final List<File> files;
+    private final List<Condition> conditions = new ArrayList<>();
+    private final List<Predicate<Map<String, String>>> predicates = new ArrayList<>();
+    private String[] projection;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private boolean ranged;
+    private long fromMillis;
+    private long toMillis;
+    
+    private static final FTimestamp PARSER = new FTimestamp(FTimestamp.Format.MINUTE);
+    private static final ThreadLocal<FRecordView> VIEWS = ThreadLocal.withInitial(FRecordView::new);
+    
+    /** A where() test, on a text record view or a decoded binary record. */
+    private interface Condition {
+        boolean test(FRecordView view);
+        
+        boolean test(Map<String, String> record);
+    }
+    
+    private FQuery(List<File> files) {
+        this.files = files;
+    }
+    
+    public static FQuery on(File file) {
+        return new FQuery(Collections.singletonList(file));
+    }
+    
+    /**
+     * Queries several files as one log, in list order, such as the
+     * segments of an FSegmentedLog.
+     */
+    public static FQuery on(List<File> files) {
+        return new FQuery(new ArrayList<>(files));
+    }
+    
+    // ----- QUERY DEFINITION -----
+    /**
+     * Keeps records whose key has the value. The value is normalized like
+     * record values, so "yes" matches a record written with true. To match
+     * records without the key, use filter(); a null value is rejected.
+     */
+    public FQuery where(String key, String value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("where() needs a key and a value: " + key + "=" + value);
+        }
+        String expected = FRead.normalizeValue(value);
+        conditions.add(new Condition() {
+            @Override
+            public boolean test(FRecordView view) {
+                return view.valueEquals(key, expected);
+            }
+            
+            @Override
+            public boolean test(Map<String, String> record) {
+                return expected.equals(record.get(key));
+            }
+        });
+        return this;
+    }
+    
+    /**
+     * Keeps records that have the key and whose value passes the test.
+     */
+    public FQuery where(String key, Predicate<String> test) {
+        if (key == null || test == null) {
+            throw new IllegalArgumentException("where() needs a key and a test: " + key);
+        }
+        conditions.add(new Condition() {
+            @Override
+            public boolean test(FRecordView view) {
+                String value = view.get(key);
+                return value != null && test.test(value);
+            }
+            
+            @Override
+            public boolean test(Map<String, String> record) {
+                String value = record.get(key);
+                return value != null && test.test(value);
+            }
+        });
+        return this;
+    }
+    
+    /**
+     * Keeps records that pass a test on the whole record.
+     */
+    public FQuery filter(Predicate<Map<String, String>> test) {
+        predicates.add(test);
+        return this;
+    }
+    
+    /**
+     * Keeps records stamped in [fromMillis, toMillis). The file's time index
+     * (FTimeIndex) limits the scan to the matching part of the file;
+     * compressed files are scanned whole.
+     */
+    public FQuery between(long fromMillis, long toMillis) {
+        this.ranged = true;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        return this;
+    }
+    
+    /**
+     * Returns only these keys, in this order; missing keys are left out.
+     */
+    public FQuery select(String... keys) {
+        this.projection = keys.clone();
+        return this;
+    }
+    
+    /**
+     * Threads used by list() and count(); 1 scans sequentially.
+     */
+    public FQuery parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+    
+    // ----- EXECUTION -----
+    /**
+     * Streams matching records to the handler in file order.
+     */
+    public void forEach(RecordHandler handler) throws IOException {
+        for (File file : files) {
+            forEachIn(file, handler);
+        }
+    }
+    
+    /**
+     * Lazy stream of matching records in file order. The stream may be
+     * made parallel; close it to release the file.
+     */
+    public Stream<Map<String, String>> stream() throws IOException {
+        if (files.size() == 1) {
+            return streamOf(files.get(0));
+        }
+        // Later files are opened when the stream reaches them
+        return files.stream().flatMap(file -> {
+            try {
+                return streamOf(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+    
+    /**
+     * All matching records in file order. One file is scanned in parallel
+     * chunks; several files are scanned in parallel, one task per file.
+     */
+    public List<Map<String, String>> list() throws IOException {
+        if (files.size() == 1) {
+            return listIn(files.get(0), chunkCount(), ForkJoinPool.commonPool());
+        }
+        List<Map<String, String>> records = scanFiles(file -> listIn(file, 1, Runnable::run),
+            (left, right) -> {
+                left.addAll(right);
+                return left;
+            });
+        return records != null ? records : new ArrayList<>();
+    }
+    
+    public long count() throws IOException {
+        if (files.size() == 1) {
+            return countIn(files.get(0), chunkCount(), ForkJoinPool.commonPool());
+        }
+        Long total = scanFiles(file -> countIn(file, 1, Runnable::run), Long::sum);
+        return total != null ? total : 0;
+    }
+    
+    // ----- PRIVATE HELPER -----
+    interface FileScan<A> {
+        A scan(File file) throws IOException;
+    }
+    
+    /**
+     * Runs the scan for every file, on the common pool unless parallelism
+     * is 1, and combines the results in file order. Null when there are
+     * no files.
+     */
+    <A> A scanFiles(FileScan<A> scan, BinaryOperator<A> combiner) throws IOException {
+        Executor executor = parallelism == 1 ? Runnable::run : ForkJoinPool.commonPool();
+        List<CompletableFuture<A>> futures = new ArrayList<>();
+        for (File file : files) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return scan.scan(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+        A result = null;
+        for (CompletableFuture<A> future : futures) {
+            A part;
+            try {
+                part = future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+            result = result == null ? part : combiner.apply(result, part);
+        }
+        return result;
+    }
+    
+    private void forEachIn(File file, RecordHandler handler) throws IOException {
+        if (FBinaryLog.isBinary(file)) {
+            forEachBinary(file, handler);
+            return;
+        }
+        if (indexed(file)) {
+            // One chunk run on the calling thread keeps the handler sequential
+            long[] range = scanRange(file);
+            Reader.processChunks(file.getPath(), range[0], range[1], 1, Runnable::run,
+                () -> null,
+                (none, line) -> {
+                    Map<String, String> record = apply(line);
+                    if (record != null) {
+                        handler.handle(record);
+                    }
+                },
+                (left, right) -> left);
+            return;
+        }
+        Reader reader = new Reader(file.getPath());
+        reader.forEachLine(line -> {
+            Map<String, String> record = apply(line);
+            if (record != null) {
+                handler.handle(record);
+            }
+        });
+    }
+    
+    private Stream<Map<String, String>> streamOf(File file) throws IOException {
+        if (FBinaryLog.isBinary(file)) {
+            return binaryStream(file);
+        }
+        Stream<String> lines;
+        if (indexed(file)) {
+            long[] range = scanRange(file);
+            lines = Reader.lines(file.getPath(), range[0], range[1], StandardCharsets.UTF_8);
+        } else {
+            lines = Reader.lines(file.getPath(), StandardCharsets.UTF_8);
+        }
+        return lines
+            .map(this::apply)
+            .filter(record -> record != null);
+    }
+    
+    private List<Map<String, String>> listIn(File file, int chunks, Executor executor) throws IOException {
+        if (FBinaryLog.isBinary(file)) {
+            List<Map<String, String>> records = new ArrayList<>();
+            forEachBinary(file, records::add);
+            return records;
+        }
+        return processChunks(file, chunks, executor,
+            ArrayList::new,
+            (records, line) -> {
+                Map<String, String> record = apply(line);
+                if (record != null) {
+                    records.add(record);
+                }
+            },
+            (left, right) -> {
+                left.addAll(right);
+                return left;
+            });
+    }
+    
+    private long countIn(File file, int chunks, Executor executor) throws IOException {
+        if (FBinaryLog.isBinary(file)) {
+            long[] total = new long[1];
+            forEachBinary(file, record -> total[0]++);
+            return total[0];
+        }
+        return processChunks(file, chunks, executor,
+            () -> new long[1],
+            (total, line) -> {
+                if (matches(line)) {
+                    total[0]++;
+                }
+            },
+            (left, right) -> {
+                left[0] += right[0];
+                return left;
+            })[0];
+    }
+    
+    /**
+     * Whole-file scans keep gzip support; time ranges scan the indexed part.
+     */
+    private <A> A processChunks(File file, int chunks, Executor executor, Supplier<A> supplier,
+                                Reader.LineAccumulator<A> accumulator,
+                                BinaryOperator<A> combiner) throws IOException {
+        if (!indexed(file)) {
+            return Reader.processChunks(file.getPath(), chunks, executor, supplier, accumulator, combiner);
+        }
+        long[] range = scanRange(file);
+        return Reader.processChunks(file.getPath(), range[0], range[1], chunks, executor,
+                                    supplier, accumulator, combiner);
+    }
+    
+    /**
+     * Byte range to scan: the whole file, or the part the time index
+     * narrows a time window down to. A missing index is built in memory
+     * only: the file may be a live segment whose sidecar an appender writes.
+     */
+    private long[] scanRange(File file) throws IOException {
+        if (!indexed(file)) {
+            return new long[] {0, -1};
+        }
+        FTimeIndex index = FTimeIndex.loadOrBuild(file.toPath());
+        return new long[] {index.findStart(fromMillis), index.findEnd(toMillis)};
+    }
+    
+    /**
+     * True when a time range is set and the file can use a time index.
+     * Otherwise the whole file is scanned; apply() still filters by time.
+     */
+    private boolean indexed(File file) {
+        return ranged && FTimeIndex.isIndexable(file.toPath());
+    }
+    
+    /**
+     * Opens a binary file at the start of the scan range.
+     */
+    private FBinaryReader openBinary(File file, long[] range) throws IOException {
+        FBinaryReader reader = new FBinaryReader(file.toPath());
+        try {
+            reader.seek(range[0]);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+        return reader;
+    }
+    
+    private static boolean beforeEnd(FBinaryReader reader, long[] range) {
+        return range[1] < 0 || reader.getPosition() < range[1];
+    }
+    
+    private void forEachBinary(File file, RecordHandler handler) throws IOException {
+        long[] range = scanRange(file);
+        try (FBinaryReader reader = openBinary(file, range)) {
+            FBinaryLog.Record record;
+            while (beforeEnd(reader, range) && (record = reader.next()) != null) {
+                Map<String, String> result = apply(record);
+                if (result != null) {
+                    handler.handle(result);
+                }
+            }
+        }
+    }
+    
+    private Stream<Map<String, String>> binaryStream(File file) throws IOException {
+        long[] range = scanRange(file);
+        FBinaryReader reader = openBinary(file, range);
+        Iterator<Map<String, String>> records = new Iterator<Map<String, String>>() {
+            private Map<String, String> next;
+            
+            @Override
+            public boolean hasNext() {
+                try {
+                    FBinaryLog.Record record;
+                    while (next == null && beforeEnd(reader, range) && (record = reader.next()) != null) {
+                        next = apply(record);
+                    }
+                    return next != null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            
+            @Override
+            public Map<String, String> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map<String, String> result = next;
+                next = null;
+                return result;
+            }
+        };
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(records, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(() -> {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+    
+    private int chunkCount() {
+        return parallelism == 1 ? 1 : parallelism * 2;
+    }
+    
+    /**
+     * Tests one line through the thread's record view. Only the where()
+     * values are looked at, and no map is built unless filter() needs one.
+     */
+    private boolean matches(CharSequence line) {
+        if (ranged && !inRange(PARSER.parse(line))) {
+            return false;
+        }
+        FRecordView view = VIEWS.get().reset(line);
+        try {
+            return accepts(view) && (predicates.isEmpty() || accepts(view.toMap()));
+        } finally {
+            view.reset(null);
+        }
+    }
+    
+    /**
+     * The projected record of a matching line, or null.
+     */
+    private Map<String, String> apply(CharSequence line) {
+        if (ranged && !inRange(PARSER.parse(line))) {
+            return null;
+        }
+        FRecordView view = VIEWS.get().reset(line);
+        try {
+            if (!accepts(view)) {
+                return null;
+            }
+            if (predicates.isEmpty()) {
+                return project(view);
+            }
+            Map<String, String> record = view.toMap();
+            return accepts(record) ? project(record) : null;
+        } finally {
+            // Do not keep the line (and its read buffer) reachable
+            view.reset(null);
+        }
+    }
+    
+    private Map<String, String> apply(FBinaryLog.Record record) {
+        if (ranged && !inRange(record.getTime())) {
+            return null;
+        }
+        Map<String, String> fields = record.toStringMap();
+        if (fields.isEmpty()) {
+            return null;
+        }
+        for (Condition condition : conditions) {
+            if (!condition.test(fields)) {
+                return null;
+            }
+        }
+        return accepts(fields) ? project(fields) : null;
+    }
+    
+    private boolean inRange(long time) {
+        return time >= fromMillis && time < toMillis;
+    }
+    
+    private boolean accepts(FRecordView view) {
+        if (view.isEmpty()) {
+            return false;
+        }
+        for (Condition condition : conditions) {
+            if (!condition.test(view)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean accepts(Map<String, String> record) {
+        for (Predicate<Map<String, String>> predicate : predicates) {
+            if (!predicate.test(record)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private Map<String, String> project(FRecordView view) {
+        if (projection == null) {
+            return view.toMap();
+        }
+        Map<String, String> projected = new LinkedHashMap<>();
+        for (String key : projection) {
+            String value = view.get(key);
+            if (value != null) {
+                projected.put(key, value);
+            }
+        }
+        return projected;
+    }
+    
+    private Map<String, String> project(Map<String, String> record) {
+        if (projection == null) {
+            return record;
+        }
+        Map<String, String> projected = new LinkedHashMap<>();
+        for (String key : projection) {
+            String value = record.get(key);
+            if (value != null) {
+                projected.put(key, value);
+            }
+        }
+        return projected;
+    }
+}
@@ -1,11 +1,19 @@
 package com.flsl.flog;
 
+import com.flsl.fileio.Reader;
+import com.flsl.fileio.ReverseLineReader;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 public class FRead {
     
+    private static final FTimestamp PARSER = new FTimestamp(FTimestamp.Format.MINUTE);
+    
     /**
      * Reads the last formatted line from a file.
      * 
@@ -16,6 +24,10 @@ public class FRead {
      * @throws IOException If the file cannot be read or format is invalid.
      */
     public static Object read(File file, boolean readRaw) throws IOException {
+        if (FBinaryLog.isBinary(file)) {
+            List<Object> last = readLast(file, 1, readRaw);
+            return last.isEmpty() ? (readRaw ? "" : new HashMap<String, String>()) : last.get(0);
+        }
         String lastLine = getLastLine(file);
         
         if (readRaw) {
@@ -26,51 +38,223 @@ public class FRead {
         return parseDataLine(lastLine);
     }
     
-    // Helper to get the last non-empty line
-    private static String getLastLine(File file) throws IOException {
-        String lastLine = "";
-        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
-            long length = raf.length() - 1;
-            if (length < 0) return "";
-            
-            for (long seek = length; seek >= 0; seek--) {
-                raf.seek(seek);
-                char c = (char) raf.read();
-                if (c == '\n' && seek != length) {
-                    break;
+    /**
+     * Reads the last n records, oldest first.
+     * 
+     * @param file The file to read from.
+     * @param n The maximum number of records to return.
+     * @param readRaw If true, returns the lines as Strings; otherwise each
+     *                record is parsed into a Map<String, String>.
+     * @return Up to n records in file order.
+     * @throws IOException If the file cannot be read.
+     */
+    public static List<Object> readLast(File file, int n, boolean readRaw) throws IOException {
+        List<Object> records = new ArrayList<>();
+        if (FBinaryLog.isBinary(file)) {
+            for (FBinaryLog.Record record : lastRecords(file, n)) {
+                records.add(readRaw ? record.toLine() : record.toStringMap());
+            }
+            return records;
+        }
+        for (String line : tail(file, n)) {
+            records.add(readRaw ? line : parseDataLine(line));
+        }
+        return records;
+    }
+    
+    /**
+     * Reads the records stamped in [fromMillis, toMillis), in file order.
+     * The file's time index narrows the scan to the matching byte range,
+     * which is then read in parallel chunks (binary files are decoded
+     * sequentially). Compressed files have no index and are read whole.
+     * Unstamped records are skipped.
+     * 
+     * @param file The file to read from.
+     * @param fromMillis Start of the window (inclusive), epoch millis.
+     * @param toMillis End of the window (exclusive), epoch millis.
+     * @param readRaw If true, returns the lines as Strings; otherwise each
+     *                record is parsed into a Map<String, String>.
+     * @return The records in the window.
+     * @throws IOException If the file cannot be read.
+     */
+    public static List<Object> readRange(File file, long fromMillis, long toMillis, boolean readRaw) throws IOException {
+        return readRange(file, fromMillis, toMillis, readRaw, true,
+                         Runtime.getRuntime().availableProcessors() * 2, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * readRange with the chunking and executor given, saving a newly built
+     * time index only when saveIndex is set.
+     */
+    static List<Object> readRange(File file, long fromMillis, long toMillis, boolean readRaw,
+                                  boolean saveIndex, int chunks, Executor executor) throws IOException {
+        Reader.LineAccumulator<List<Object>> inWindow = (records, line) -> {
+            long time = PARSER.parse(line);
+            if (time >= fromMillis && time < toMillis) {
+                String text = line.toString().trim();
+                records.add(readRaw ? text : parseDataLine(text));
+            }
+        };
+        if (!FTimeIndex.isIndexable(file.toPath())) {
+            return Reader.processChunks(file.getPath(), chunks, executor, ArrayList::new, inWindow, FRead::concat);
+        }
+        FTimeIndex index = saveIndex ? FTimeIndex.forFile(file) : FTimeIndex.loadOrBuild(file.toPath());
+        long start = index.findStart(fromMillis);
+        long end = index.findEnd(toMillis);
+        if (FBinaryLog.isBinary(file)) {
+            List<Object> records = new ArrayList<>();
+            try (FBinaryReader reader = new FBinaryReader(file.toPath())) {
+                reader.seek(start);
+                FBinaryLog.Record record;
+                while ((end < 0 || reader.getPosition() < end) && (record = reader.next()) != null) {
+                    long time = record.getTime();
+                    if (time >= fromMillis && time < toMillis) {
+                        records.add(readRaw ? record.toLine() : record.toStringMap());
+                    }
                 }
-                lastLine = c + lastLine;
             }
+            return records;
         }
-        return lastLine.trim();
+        return Reader.processChunks(file.getPath(), start, end, chunks, executor,
+            ArrayList::new, inWindow, FRead::concat);
     }
     
-    // Core parsing logic: extracts "[key = value, ...]" into a Map
-    private static Map<String, String> parseDataLine(String line) {
-        Map<String, String> result = new HashMap<>();
-        
-        // Find the data section (after "-> " if timestamp exists)
-        int dataStart = line.indexOf("[", line.indexOf("]") + 1);
-        if (dataStart == -1) dataStart = line.indexOf("[");
-        if (dataStart == -1) return result;
-        
-        int dataEnd = line.lastIndexOf("]");
-        if (dataEnd == -1) return result;
-        
-        String dataSection = line.substring(dataStart + 1, dataEnd);
-        
-        // Split by ", " to get key-value pairs
-        String[] pairs = dataSection.split(", ");
-        for (String pair : pairs) {
-            String[] kv = pair.split(" = ", 2);
-            if (kv.length == 2) {
-                // Convert "yes"/"no" to boolean strings if desired
-                String value = kv[1];
-                if ("yes".equalsIgnoreCase(value)) value = "true";
-                if ("no".equalsIgnoreCase(value)) value = "false";
-                result.put(kv[0].trim(), value);
+    private static List<Object> concat(List<Object> left, List<Object> right) {
+        left.addAll(right);
+        return left;
+    }
+    
+    /**
+     * Hands every record of the file to the handler through one reused
+     * FRecordView, without building strings or maps per line. The view is
+     * only valid during the call. Binary files are rendered line by line.
+     * 
+     * @param file The file to read from.
+     * @param handler Called once per record, in file order.
+     * @throws IOException If the file cannot be read.
+     */
+    public static void forEachRecord(File file, FRecordView.Handler handler) throws IOException {
+        FRecordView view = new FRecordView();
+        if (FBinaryLog.isBinary(file)) {
+            try (FBinaryReader reader = new FBinaryReader(file.toPath())) {
+                FBinaryLog.Record record;
+                while ((record = reader.next()) != null) {
+                    if (!view.reset(record.toLine()).isEmpty()) {
+                        handler.handle(view);
+                    }
+                }
             }
+            return;
         }
-        return result;
+        new Reader(file.getPath()).forEachLine(line -> {
+            if (!view.reset(line).isEmpty()) {
+                handler.handle(view);
+            }
+        });
+    }
+    
+    /**
+     * Returns the last n non-empty lines, oldest first. The file is read
+     * backwards in blocks, so the cost depends on n, not on the file size.
+     * Binary files are decoded from a time index entry near the end (see
+     * lastRecords) and their records rendered as text.
+     */
+    public static List<String> tail(File file, int n) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (FBinaryLog.isBinary(file)) {
+            for (FBinaryLog.Record record : lastRecords(file, n)) {
+                lines.add(record.toLine());
+            }
+            return lines;
+        }
+        try (ReverseLineReader reader = openReverse(file)) {
+            String line;
+            while (lines.size() < n && (line = reader.readPreviousLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        Collections.reverse(lines);
+        return lines;
+    }
+    
+    /**
+     * Opens a reader that returns the lines of the file from last to first.
+     * Binary files have no lines and are rejected with an
+     * IllegalArgumentException; use readLast() or tail() for them.
+     */
+    public static ReverseLineReader openReverse(File file) throws IOException {
+        if (FBinaryLog.isBinary(file)) {
+            throw new IllegalArgumentException("Binary flog files cannot be read backwards: " + file);
+        }
+        return new ReverseLineReader(file.toPath(), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Binary records have no line ends to search backwards for. Instead the
+     * time index gives record starts: the last entries are decoded first,
+     * stepping back twice as far each time until n records are found, so
+     * only the frames in between are skipped (not decoded). Without an
+     * index the whole file is decoded.
+     */
+    private static Collection<FBinaryLog.Record> lastRecords(File file, int n) throws IOException {
+        ArrayDeque<FBinaryLog.Record> last = new ArrayDeque<>();
+        if (n <= 0) {
+            return last;
+        }
+        FTimeIndex index = FTimeIndex.load(file.toPath());
+        int entry = index != null ? index.size() : 0;
+        int step = 1;
+        long end = -1;
+        try (FBinaryReader reader = new FBinaryReader(file.toPath())) {
+            while (last.size() < n) {
+                entry -= step;
+                long start = entry > 0 ? index.offsetAt(entry) : 0;
+                int needed = n - last.size();
+                ArrayDeque<FBinaryLog.Record> window = new ArrayDeque<>();
+                reader.seek(start);
+                FBinaryLog.Record record;
+                while ((end < 0 || reader.getPosition() < end) && (record = reader.next()) != null) {
+                    if (window.size() == needed) {
+                        window.removeFirst();
+                    }
+                    window.addLast(record);
+                }
+                while (!window.isEmpty()) {
+                    last.addFirst(window.removeLast());
+                }
+                if (start == 0) {
+                    break;
+                }
+                end = start;
+                step *= 2;
+            }
+        }
+        return last;
+    }
+    
+    // Helper to get the last non-empty line
+    private static String getLastLine(File file) throws IOException {
+        List<String> last = tail(file, 1);
+        return last.isEmpty() ? "" : last.get(0);
+    }
+    
+    // Core parsing logic: extracts "[key = value, ...]" into a Map
+    static Map<String, String> parseDataLine(String line) {
+        return new FRecordView().reset(line).toMap();
+    }
+    
+    // The raw fields in written order, values not normalized
+    static Map<String, String> parseFields(String line) {
+        return new FRecordView().reset(line).toRawMap();
+    }
+    
+    // Convert "yes"/"no" to boolean strings
+    static String normalizeValue(String value) {
+        if ("yes".equalsIgnoreCase(value)) return "true";
+        if ("no".equalsIgnoreCase(value)) return "false";
+        return value;
     }
-}
\ No newline at end of file
+}
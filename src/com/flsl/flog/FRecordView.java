@@ -0,0 +1,409 @@
+package com.flsl.flog;
+
+import com.flsl.fileio.ByteLine;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reusable read-only view of one flog record, "[key = value, ...]".
+ * reset() only remembers the line; the first lookup scans it once and
+ * stores the offsets of every key and value, so no strings or maps are
+ * built. Numbers and booleans are parsed in place by the typed getters.
+ * The line may be a String, a CharBuffer over a char[], or a ByteLine
+ * over a read buffer (values are then decoded as UTF-8).
+ *
+ * Values follow the FRead rules: the last of repeated keys wins and
+ * yes/no read as true/false. A view is not thread-safe; keep one per
+ * thread and reset it for every record.
+ *
+ * <pre>
+ * FRecordView view = new FRecordView();
+ * for (String line : lines) {
+ *     if (view.reset(line).getInt("status", 0) &gt;= 500) { ... }
+ * }
+ * </pre>
+ */
+public final class FRecordView {
+    
+    public interface Handler {
+        void handle(FRecordView record) throws IOException;
+    }
+    
+    private static final FTimestamp PARSER = new FTimestamp(FTimestamp.Format.MINUTE);
+    
+    private CharSequence line;
+    // keyStart, keyEnd, valueStart, valueEnd per pair
+    private int[] offsets = new int[32];
+    private int pairs = -1;
+    
+    /**
+     * Points the view at a new line; nothing is parsed yet.
+     */
+    public FRecordView reset(CharSequence line) {
+        this.line = line;
+        this.pairs = -1;
+        return this;
+    }
+    
+    public CharSequence getLine() {
+        return line;
+    }
+    
+    // ----- LOOKUP -----
+    /**
+     * Number of key/value pairs as written, including repeated keys.
+     */
+    public int size() {
+        return scan();
+    }
+    
+    public boolean isEmpty() {
+        return scan() == 0;
+    }
+    
+    public boolean has(CharSequence key) {
+        return find(key) >= 0;
+    }
+    
+    public String getKey(int index) {
+        checkIndex(index);
+        return text(offsets[index * 4], offsets[index * 4 + 1]);
+    }
+    
+    public String getValue(int index) {
+        checkIndex(index);
+        return normalized(index);
+    }
+    
+    /**
+     * The value of the key, or null when the record does not have it.
+     */
+    public String get(CharSequence key) {
+        int index = find(key);
+        return index < 0 ? null : normalized(index);
+    }
+    
+    /**
+     * Compares the value without building a string.
+     */
+    public boolean valueEquals(CharSequence key, CharSequence expected) {
+        int index = find(key);
+        if (index < 0) {
+            return false;
+        }
+        String constant = normalizedConstant(index);
+        if (constant != null) {
+            return constant.contentEquals(expected);
+        }
+        return regionEquals(offsets[index * 4 + 2], offsets[index * 4 + 3], expected);
+    }
+    
+    // ----- TYPED GETTERS -----
+    /**
+     * True for "true" and "yes" (any case), false for other values, and
+     * the default when the key is missing.
+     */
+    public boolean getBoolean(CharSequence key, boolean defaultValue) {
+        int index = find(key);
+        if (index < 0) {
+            return defaultValue;
+        }
+        int start = offsets[index * 4 + 2];
+        int end = offsets[index * 4 + 3];
+        return regionEqualsIgnoreCase(start, end, "true") || regionEqualsIgnoreCase(start, end, "yes");
+    }
+    
+    /**
+     * @throws NumberFormatException If the value is not an int.
+     */
+    public int getInt(CharSequence key, int defaultValue) {
+        int index = find(key);
+        if (index < 0) {
+            return defaultValue;
+        }
+        long value = parseLong(index);
+        if (value != (int) value) {
+            throw numberFormat(index);
+        }
+        return (int) value;
+    }
+    
+    /**
+     * @throws NumberFormatException If the value is not a long.
+     */
+    public long getLong(CharSequence key, long defaultValue) {
+        int index = find(key);
+        return index < 0 ? defaultValue : parseLong(index);
+    }
+    
+    /**
+     * @throws NumberFormatException If the value is not a number.
+     */
+    public double getDouble(CharSequence key, double defaultValue) {
+        int index = find(key);
+        if (index < 0) {
+            return defaultValue;
+        }
+        return Double.parseDouble(text(offsets[index * 4 + 2], offsets[index * 4 + 3]));
+    }
+    
+    /**
+     * The record's timestamp in epoch millis, or -1 when it has none.
+     */
+    public long getTime() {
+        return PARSER.parse(line);
+    }
+    
+    /**
+     * The record's "#N" sequence number, or -1 when it has none.
+     */
+    public long getSequence() {
+        return FTimestamp.parseSequence(line);
+    }
+    
+    // ----- COPYING -----
+    /**
+     * The record as the Map FRead returns, in written order.
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> result = new LinkedHashMap<>();
+        int count = scan();
+        for (int i = 0; i < count; i++) {
+            result.put(text(offsets[i * 4], offsets[i * 4 + 1]), normalized(i));
+        }
+        return result;
+    }
+    
+    /**
+     * Like toMap(), with values as written (no yes/no mapping).
+     */
+    Map<String, String> toRawMap() {
+        Map<String, String> result = new LinkedHashMap<>();
+        int count = scan();
+        for (int i = 0; i < count; i++) {
+            result.put(text(offsets[i * 4], offsets[i * 4 + 1]), text(offsets[i * 4 + 2], offsets[i * 4 + 3]));
+        }
+        return result;
+    }
+    
+    @Override
+    public String toString() {
+        return line == null ? "" : line.toString();
+    }
+    
+    // ----- PRIVATE HELPER -----
+    /**
+     * Finds the data section the way FRead always has: the first '[' after
+     * the first ']' (or the first '[' when there is none), up to the last
+     * ']'. Pairs are split on ", " and then on the first " = ".
+     */
+    private int scan() {
+        if (pairs >= 0) {
+            return pairs;
+        }
+        pairs = 0;
+        if (line == null) {
+            return 0;
+        }
+        int length = line.length();
+        int firstClose = indexOf(']', 0, length);
+        int dataStart = indexOf('[', firstClose + 1, length);
+        if (dataStart < 0) {
+            dataStart = indexOf('[', 0, length);
+        }
+        int dataEnd = lastIndexOf(']', length);
+        if (dataStart < 0 || dataEnd <= dataStart) {
+            return 0;
+        }
+        
+        int pos = dataStart + 1;
+        while (true) {
+            int separator = indexOf(", ", pos, dataEnd);
+            int pairEnd = separator < 0 ? dataEnd : separator;
+            int equals = indexOf(" = ", pos, pairEnd);
+            if (equals >= 0) {
+                int keyStart = pos;
+                int keyEnd = equals;
+                while (keyStart < keyEnd && line.charAt(keyStart) <= ' ') {
+                    keyStart++;
+                }
+                while (keyEnd > keyStart && line.charAt(keyEnd - 1) <= ' ') {
+                    keyEnd--;
+                }
+                add(keyStart, keyEnd, equals + 3, pairEnd);
+            }
+            if (separator < 0) {
+                break;
+            }
+            pos = separator + 2;
+        }
+        return pairs;
+    }
+    
+    private void add(int keyStart, int keyEnd, int valueStart, int valueEnd) {
+        int at = pairs * 4;
+        if (at + 4 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[at] = keyStart;
+        offsets[at + 1] = keyEnd;
+        offsets[at + 2] = valueStart;
+        offsets[at + 3] = valueEnd;
+        pairs++;
+    }
+    
+    /**
+     * Index of the last pair with the key, or -1.
+     */
+    private int find(CharSequence key) {
+        for (int i = scan() - 1; i >= 0; i--) {
+            if (regionEquals(offsets[i * 4], offsets[i * 4 + 1], key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private void checkIndex(int index) {
+        if (index < 0 || index >= scan()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + pairs);
+        }
+    }
+    
+    private String normalized(int index) {
+        String constant = normalizedConstant(index);
+        return constant != null ? constant : text(offsets[index * 4 + 2], offsets[index * 4 + 3]);
+    }
+    
+    /**
+     * "true"/"false" for yes/no values, otherwise null.
+     */
+    private String normalizedConstant(int index) {
+        int start = offsets[index * 4 + 2];
+        int end = offsets[index * 4 + 3];
+        if (regionEqualsIgnoreCase(start, end, "yes")) {
+            return "true";
+        }
+        if (regionEqualsIgnoreCase(start, end, "no")) {
+            return "false";
+        }
+        return null;
+    }
+    
+    private long parseLong(int index) {
+        int start = offsets[index * 4 + 2];
+        int end = offsets[index * 4 + 3];
+        if (start == end) {
+            throw numberFormat(index);
+        }
+        boolean negative = false;
+        char first = line.charAt(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++start == end) {
+                throw numberFormat(index);
+            }
+        }
+        // Accumulate negatively so Long.MIN_VALUE fits, like Long.parseLong
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < limit / 10) {
+                throw numberFormat(index);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw numberFormat(index);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+    
+    private NumberFormatException numberFormat(int index) {
+        return new NumberFormatException("For input string: \""
+            + text(offsets[index * 4 + 2], offsets[index * 4 + 3]) + "\"");
+    }
+    
+    private String text(int start, int end) {
+        if (line instanceof ByteLine) {
+            return ((ByteLine) line).decode(start, end);
+        }
+        return line.subSequence(start, end).toString();
+    }
+    
+    private boolean regionEquals(int start, int end, CharSequence expected) {
+        if (end - start != expected.length()) {
+            // A ByteLine holds UTF-8 bytes, so non-ASCII text differs in length
+            return line instanceof ByteLine && !isAscii(expected) && text(start, end).contentEquals(expected);
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (line.charAt(start + i) != expected.charAt(i)) {
+                return line instanceof ByteLine && !isAscii(expected) && text(start, end).contentEquals(expected);
+            }
+        }
+        return true;
+    }
+    
+    private boolean regionEqualsIgnoreCase(int start, int end, String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            char c = line.charAt(start + i);
+            if (c != expected.charAt(i) && Character.toLowerCase(c) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean isAscii(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private int indexOf(char c, int from, int to) {
+        for (int i = Math.max(from, 0); i < to; i++) {
+            if (line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private int indexOf(String text, int from, int to) {
+        int last = to - text.length();
+        char first = text.charAt(0);
+        for (int i = from; i <= last; i++) {
+            if (line.charAt(i) != first) {
+                continue;
+            }
+            int k = 1;
+            while (k < text.length() && line.charAt(i + k) == text.charAt(k)) {
+                k++;
+            }
+            if (k == text.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private int lastIndexOf(char c, int to) {
+        for (int i = to - 1; i >= 0; i--) {
+            if (line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,458 @@
+package com.flsl.flog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A flog split into numbered segment files: the log "logs/app.log" is
+ * written as "logs/app.000001-<start>.log", "logs/app.000002-<start>.log"
+ * and so on, where start is the epoch millis the segment was started at.
+ * The start time in the name survives copies and restarts, unlike file
+ * times; segments named without one (plain "app.000001.log") are still
+ * read, and their age is counted from when the log reopens them.
+ * A new segment starts when the current one reaches the size or age
+ * limit, and retention deletes the oldest segments by count or age, so no
+ * file grows without bound and expiring data never rewrites anything.
+ * Readers see the segments, in order, as one log. A ".flb" base name gives
+ * binary segments.
+ *
+ * Writes share the current segment's FAppender; a rotation waits for the
+ * writes in progress, closes that appender and opens the next segment.
+ * Records are stamped while the rotation waits, so every stamped record
+ * lies between its segment's start and the next segment's start.
+ */
+public class FSegmentedLog implements AutoCloseable {
+    private static final int INDEX_DIGITS = 6;
+    private static final char START_SEPARATOR = '-';
+    
+    private final File base;
+    private final File directory;
+    private final String prefix;
+    private final String suffix;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private volatile long maxSegmentBytes;
+    private volatile long maxSegmentMillis;
+    private volatile int maxSegments;
+    private volatile long maxAgeMillis;
+    
+    // Changed only under the write lock
+    private volatile File current;
+    private volatile FAppender appender;
+    private volatile long segmentStart;
+    private long currentIndex;
+    private volatile boolean closed;
+    
+    /**
+     * @param base The logical log file; segments are created next to it.
+     */
+    public FSegmentedLog(File base) {
+        File absolute = base.getAbsoluteFile();
+        this.base = absolute;
+        String name = absolute.getName();
+        int dot = name.lastIndexOf('.');
+        this.directory = absolute.getParentFile();
+        this.prefix = (dot > 0 ? name.substring(0, dot) : name) + ".";
+        this.suffix = dot > 0 ? name.substring(dot) : "";
+    }
+    
+    // ----- WRITING -----
+    /**
+     * Writes a record like FWrite.write(), to the current segment.
+     */
+    public void write(Map<String, Object> data, boolean enableDateExport) throws IOException {
+        append(data, enableDateExport, false);
+    }
+    
+    /**
+     * Like write(), but returns as soon as the record is queued.
+     */
+    public void writeAsync(Map<String, Object> data, boolean enableDateExport) throws IOException {
+        append(data, enableDateExport, true);
+    }
+    
+    /**
+     * Waits until every record queued for the current segment is written.
+     */
+    public void flush() throws IOException {
+        lock.readLock().lock();
+        try {
+            if (appender != null && !closed) {
+                currentAppender().flush();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Starts a new segment now, then applies the retention limits.
+     */
+    public void rotate() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                throw new IOException("Log is closed: " + base);
+            }
+            ensureOpen();
+            startSegment(currentIndex + 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        applyRetention();
+    }
+    
+    /**
+     * Deletes the oldest segments while there are more than the segment
+     * limit or they were last written longer ago than the age limit. Only
+     * a run of oldest segments is removed, so the log never has gaps; the
+     * current segment is always kept.
+     */
+    public void applyRetention() throws IOException {
+        if (maxSegments <= 0 && maxAgeMillis <= 0) {
+            return;
+        }
+        List<File> segments = segments();
+        File active = current;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < segments.size(); i++) {
+            File segment = segments.get(i);
+            if (segment.equals(active)) {
+                break;
+            }
+            boolean tooMany = maxSegments > 0 && segments.size() - i > maxSegments;
+            boolean tooOld = maxAgeMillis > 0 && segment.lastModified() < now - maxAgeMillis;
+            if (!tooMany && !tooOld) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(segment.toPath());
+                Files.deleteIfExists(FTimeIndex.sidecarOf(segment.toPath()));
+            } catch (IOException e) {
+                // Still in use (on some platforms); try again after the next rotation
+                break;
+            }
+        }
+    }
+    
+    // ----- READING -----
+    /**
+     * The segment files, oldest first.
+     */
+    public List<File> segments() throws IOException {
+        TreeMap<Long, File> found = new TreeMap<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory.toPath())) {
+            for (Path entry : entries) {
+                long index = indexOf(entry.getFileName().toString());
+                if (index > 0) {
+                    found.put(index, entry.toFile());
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(found.values());
+    }
+    
+    /**
+     * Queries all segments as one log; list() and count() scan the
+     * segments in parallel.
+     */
+    public FQuery query() throws IOException {
+        return FQuery.on(segments());
+    }
+    
+    /**
+     * Reads the last n records across segments, oldest first.
+     *
+     * @see FRead#readLast(File, int, boolean)
+     */
+    public List<Object> readLast(int n, boolean readRaw) throws IOException {
+        List<File> segments = segments();
+        List<List<Object>> parts = new ArrayList<>();
+        int found = 0;
+        for (int i = segments.size() - 1; i >= 0 && found < n; i--) {
+            List<Object> part = FRead.readLast(segments.get(i), n - found, readRaw);
+            parts.add(part);
+            found += part.size();
+        }
+        List<Object> records = new ArrayList<>(found);
+        for (int i = parts.size() - 1; i >= 0; i--) {
+            records.addAll(parts.get(i));
+        }
+        return records;
+    }
+    
+    /**
+     * Reads the records stamped in [fromMillis, toMillis) across segments.
+     * Segments whose start times rule out the window are not opened; the
+     * others are read in parallel, one task per segment, using their time
+     * index. Missing indexes are built in memory only, since the appender
+     * may be writing the current segment's sidecar.
+     *
+     * @see FRead#readRange(File, long, long, boolean)
+     */
+    public List<Object> readRange(long fromMillis, long toMillis, boolean readRaw) throws IOException {
+        List<File> segments = segments();
+        List<File> overlapping = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            long start = startOf(segments.get(i).getName());
+            long end = i + 1 < segments.size() ? startOf(segments.get(i + 1).getName()) : -1;
+            if ((start < 0 || start < toMillis) && (end < 0 || end > fromMillis)) {
+                overlapping.add(segments.get(i));
+            }
+        }
+        List<Object> records = FQuery.on(overlapping).scanFiles(
+            segment -> FRead.readRange(segment, fromMillis, toMillis, readRaw, false, 1, Runnable::run),
+            (left, right) -> {
+                left.addAll(right);
+                return left;
+            });
+        return records != null ? records : new ArrayList<>();
+    }
+    
+    public File getCurrentSegment() {
+        return current;
+    }
+    
+    // ----- LIMITS -----
+    /**
+     * Starts a new segment once the current one holds this many bytes.
+     * 0 (the default) means no size limit.
+     */
+    public void setMaxSegmentBytes(long maxSegmentBytes) {
+        if (maxSegmentBytes < 0) {
+            throw new IllegalArgumentException("Segment size must not be negative: " + maxSegmentBytes);
+        }
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+    
+    public long getMaxSegmentBytes() {
+        return maxSegmentBytes;
+    }
+    
+    /**
+     * Starts a new segment once the current one is this old. 0 (the
+     * default) means no age limit.
+     */
+    public void setMaxSegmentMillis(long maxSegmentMillis) {
+        if (maxSegmentMillis < 0) {
+            throw new IllegalArgumentException("Segment age must not be negative: " + maxSegmentMillis);
+        }
+        this.maxSegmentMillis = maxSegmentMillis;
+    }
+    
+    public long getMaxSegmentMillis() {
+        return maxSegmentMillis;
+    }
+    
+    /**
+     * Retention: keeps at most this many segments. 0 (the default) keeps all.
+     */
+    public void setMaxSegments(int maxSegments) {
+        if (maxSegments < 0) {
+            throw new IllegalArgumentException("Segment count must not be negative: " + maxSegments);
+        }
+        this.maxSegments = maxSegments;
+    }
+    
+    public int getMaxSegments() {
+        return maxSegments;
+    }
+    
+    /**
+     * Retention: deletes segments last written longer ago than this.
+     * 0 (the default) keeps them regardless of age.
+     */
+    public void setMaxAgeMillis(long maxAgeMillis) {
+        if (maxAgeMillis < 0) {
+            throw new IllegalArgumentException("Age must not be negative: " + maxAgeMillis);
+        }
+        this.maxAgeMillis = maxAgeMillis;
+    }
+    
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+    
+    // ----- CLOSE -----
+    /**
+     * Flushes and closes the current segment. Reading still works.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            if (appender != null) {
+                appender.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // ----- PRIVATE HELPER -----
+    private void append(Map<String, Object> data, boolean enableDateExport, boolean async) throws IOException {
+        if (needsRotation() && rotateIfNeeded()) {
+            applyRetention();
+        }
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IOException("Log is closed: " + base);
+            }
+            FWrite.write(currentAppender(), data, enableDateExport, async);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Cheap check without the lock; rotateIfNeeded() checks again.
+     */
+    private boolean needsRotation() {
+        FAppender active = appender;
+        if (active == null) {
+            return true;
+        }
+        long limit = maxSegmentBytes;
+        if (limit > 0 && active.getOffset() >= limit) {
+            return true;
+        }
+        long age = maxSegmentMillis;
+        return age > 0 && System.currentTimeMillis() - segmentStart >= age;
+    }
+    
+    /**
+     * Opens the log or starts the next segment; true when it rotated.
+     */
+    private boolean rotateIfNeeded() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            ensureOpen();
+            if (needsRotation()) {
+                startSegment(currentIndex + 1);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Continues the newest segment, or starts the first one.
+     */
+    private void ensureOpen() throws IOException {
+        if (appender != null) {
+            return;
+        }
+        List<File> segments = segments();
+        if (segments.isEmpty()) {
+            startSegment(1);
+            return;
+        }
+        File last = segments.get(segments.size() - 1);
+        long start = startOf(last.getName());
+        segmentStart = start >= 0 ? start : System.currentTimeMillis();
+        currentIndex = indexOf(last.getName());
+        current = last;
+        appender = FAppender.forFile(last);
+    }
+    
+    private void startSegment(long index) throws IOException {
+        FAppender previous = appender;
+        try {
+            if (previous != null) {
+                previous.close();
+            }
+        } finally {
+            long start = System.currentTimeMillis();
+            File next = new File(directory,
+                prefix + String.format("%0" + INDEX_DIGITS + "d", index) + START_SEPARATOR + start + suffix);
+            Files.createDirectories(directory.toPath());
+            appender = FAppender.forFile(next);
+            current = next;
+            currentIndex = index;
+            segmentStart = start;
+        }
+    }
+    
+    /**
+     * The segment's appender; reopened if something closed it, such as
+     * FWrite.closeAll().
+     */
+    private FAppender currentAppender() throws IOException {
+        FAppender active = appender;
+        if (active.isClosed()) {
+            active = FAppender.forFile(current);
+            appender = active;
+        }
+        return active;
+    }
+    
+    /**
+     * Segment number of a file name of this log, or -1.
+     */
+    private long indexOf(String name) {
+        String part = segmentPart(name);
+        if (part == null) {
+            return -1;
+        }
+        int separator = part.indexOf(START_SEPARATOR);
+        if (separator >= 0 && parseNumber(part.substring(separator + 1)) < 0) {
+            return -1;
+        }
+        return parseNumber(separator < 0 ? part : part.substring(0, separator));
+    }
+    
+    /**
+     * Start time in the file name of a segment, or -1 when it has none.
+     */
+    private long startOf(String name) {
+        String part = segmentPart(name);
+        int separator = part != null ? part.indexOf(START_SEPARATOR) : -1;
+        return separator < 0 ? -1 : parseNumber(part.substring(separator + 1));
+    }
+    
+    /**
+     * The part of the name between prefix and suffix, or null.
+     */
+    private String segmentPart(String name) {
+        int end = name.length() - suffix.length();
+        if (!name.startsWith(prefix) || !name.endsWith(suffix) || end <= prefix.length()) {
+            return null;
+        }
+        return name.substring(prefix.length(), end);
+    }
+    
+    /**
+     * Value of 1 to 18 decimal digits, or -1.
+     */
+    private static long parseNumber(String digits) {
+        if (digits.isEmpty() || digits.length() > 18) {
+            return -1;
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+        return Long.parseLong(digits);
+    }
+}
@@ -0,0 +1,336 @@
+package com.flsl.flog;
+
+import com.flsl.fileio.ByteLine;
+import com.flsl.fileio.MappedLineReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Sparse time index of a timestamped flog file, kept in a ".tidx" sidecar.
+ * Holds one (bucket, offset) entry per time bucket (one minute by default):
+ * the offset of the first record stamped in that bucket or later. FAppender
+ * appends entries as it writes records, so the index grows with the log;
+ * readers binary-search it to find the byte range of a time window.
+ * 
+ * Entries only ever point at real record starts, so a missing entry just
+ * means a longer scan, never a missed record. Records written by threads
+ * racing across a bucket boundary can land slightly out of time order;
+ * range ends are padded by one bucket to cover them.
+ * 
+ * Compressed (".gz") logs cannot be entered at a byte offset, so they
+ * are never indexed; queries scan them whole and filter by time.
+ */
+public class FTimeIndex {
+    public static final long DEFAULT_BUCKET_MILLIS = 60_000L;
+    
+    private static final String SUFFIX = ".tidx";
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final int MAGIC = 0x54494458; // "TIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 16;
+    private static final FTimestamp PARSER = new FTimestamp(FTimestamp.Format.MINUTE);
+    
+    private final long bucketMillis;
+    private final long[] buckets;
+    private final long[] offsets;
+    
+    private FTimeIndex(long bucketMillis, long[] buckets, long[] offsets) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+        this.offsets = offsets;
+    }
+    
+    // ----- LOADING -----
+    /**
+     * Loads the sidecar, or scans the log and saves a new one when the
+     * sidecar is missing or out of date.
+     */
+    public static FTimeIndex forFile(File log) throws IOException {
+        Path path = log.toPath();
+        requireIndexable(path);
+        FTimeIndex index = load(path);
+        if (index != null) {
+            return index;
+        }
+        index = build(path);
+        try {
+            index.save(path);
+        } catch (IOException e) {
+            // Keep the in-memory index
+        }
+        return index;
+    }
+    
+    /**
+     * Loads the sidecar, or builds the index in memory without saving it.
+     */
+    static FTimeIndex loadOrBuild(Path log) throws IOException {
+        requireIndexable(log);
+        FTimeIndex index = load(log);
+        return index != null ? index : build(log);
+    }
+    
+    /**
+     * Reads the sidecar, or returns null when it is missing, unreadable or
+     * points past the end of the log (truncated or replaced file).
+     */
+    public static FTimeIndex load(Path log) throws IOException {
+        Path sidecar = sidecarOf(log);
+        if (!Files.exists(sidecar) || !Files.exists(log)) {
+            return null;
+        }
+        long logSize = Files.size(log);
+        byte[] bytes = Files.readAllBytes(sidecar);
+        if (bytes.length < HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            return null;
+        }
+        long bucketMillis = in.getLong();
+        if (bucketMillis <= 0) {
+            return null;
+        }
+        
+        int capacity = (bytes.length - HEADER_SIZE) / ENTRY_SIZE;
+        long[] buckets = new long[capacity];
+        long[] offsets = new long[capacity];
+        int count = 0;
+        while (in.remaining() >= ENTRY_SIZE) {
+            long bucket = in.getLong();
+            long offset = in.getLong();
+            if (offset >= logSize) {
+                return null;
+            }
+            // Tolerate entries from racing writers: keep the index increasing
+            if (count == 0 || (bucket > buckets[count - 1] && offset > offsets[count - 1])) {
+                buckets[count] = bucket;
+                offsets[count] = offset;
+                count++;
+            }
+        }
+        return new FTimeIndex(bucketMillis, Arrays.copyOf(buckets, count), Arrays.copyOf(offsets, count));
+    }
+    
+    /**
+     * Scans the whole log once and indexes every bucket change. Binary
+     * (".flb") logs are decoded record by record.
+     */
+    public static FTimeIndex build(Path log) throws IOException {
+        requireIndexable(log);
+        Builder builder = new Builder();
+        if (log.getFileName().toString().endsWith(FBinaryLog.EXTENSION)) {
+            try (FBinaryReader reader = new FBinaryReader(log)) {
+                long offset = reader.getPosition();
+                FBinaryLog.Record record;
+                while ((record = reader.next()) != null) {
+                    builder.add(record.getTime(), offset);
+                    offset = reader.getPosition();
+                }
+            }
+            return builder.toIndex();
+        }
+        try (MappedLineReader reader = new MappedLineReader(log.toString())) {
+            long offset = reader.getPosition();
+            ByteLine line;
+            while ((line = reader.nextLine()) != null) {
+                builder.add(PARSER.parse(line), offset);
+                offset = reader.getPosition();
+            }
+        }
+        return builder.toIndex();
+    }
+    
+    public void save(Path log) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + buckets.length * ENTRY_SIZE);
+        out.putInt(MAGIC).putInt(VERSION).putLong(bucketMillis);
+        for (int i = 0; i < buckets.length; i++) {
+            out.putLong(buckets[i]).putLong(offsets[i]);
+        }
+        Files.write(sidecarOf(log), out.array());
+    }
+    
+    /**
+     * False for compressed logs, whose offsets are not file positions.
+     */
+    static boolean isIndexable(Path log) {
+        return !log.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(COMPRESSED_SUFFIX);
+    }
+    
+    private static void requireIndexable(Path log) throws IOException {
+        if (!isIndexable(log)) {
+            throw new IOException("Compressed logs have no time index: " + log);
+        }
+    }
+    
+    public static Path sidecarOf(Path log) {
+        return log.resolveSibling(log.getFileName().toString() + SUFFIX);
+    }
+    
+    // ----- QUERIES -----
+    /**
+     * Offset to start scanning from to see every record stamped at or
+     * after the time.
+     */
+    public long findStart(long fromMillis) {
+        int i = floorEntry(bucketOf(fromMillis));
+        return i < 0 ? 0 : offsets[i];
+    }
+    
+    /**
+     * Offset after which no record is stamped before the time, or -1 when
+     * the range runs to the end of the log.
+     */
+    public long findEnd(long toMillis) {
+        long last = bucketOf(toMillis);
+        if (last > Long.MAX_VALUE - bucketMillis) {
+            return -1;
+        }
+        // One bucket of slack for records that raced across a boundary
+        int i = floorEntry(last + bucketMillis) + 1;
+        return i < buckets.length ? offsets[i] : -1;
+    }
+    
+    public int size() {
+        return buckets.length;
+    }
+    
+    /**
+     * Record offset of the i-th entry, oldest first.
+     */
+    long offsetAt(int i) {
+        return offsets[i];
+    }
+    
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+    
+    /** Collects the first offset of every new bucket during a scan. */
+    private static final class Builder {
+        private long[] buckets = new long[256];
+        private long[] offsets = new long[256];
+        private int count;
+        
+        void add(long time, long offset) {
+            if (time < 0) {
+                return;
+            }
+            long bucket = Math.floorDiv(time, DEFAULT_BUCKET_MILLIS) * DEFAULT_BUCKET_MILLIS;
+            if (count == 0 || bucket > buckets[count - 1]) {
+                if (count == buckets.length) {
+                    buckets = Arrays.copyOf(buckets, count * 2);
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                buckets[count] = bucket;
+                offsets[count] = offset;
+                count++;
+            }
+        }
+        
+        FTimeIndex toIndex() {
+            return new FTimeIndex(DEFAULT_BUCKET_MILLIS, Arrays.copyOf(buckets, count), Arrays.copyOf(offsets, count));
+        }
+    }
+    
+    // ----- APPENDER SIDE -----
+    /**
+     * Appends entries to the sidecar while FAppender writes the log.
+     */
+    static final class Updater implements AutoCloseable {
+        private final FileChannel channel;
+        private final long bucketMillis;
+        private ByteBuffer pending = ByteBuffer.allocate(64 * ENTRY_SIZE);
+        private long lastBucket;
+        
+        private Updater(FileChannel channel, long bucketMillis, long lastBucket) {
+            this.channel = channel;
+            this.bucketMillis = bucketMillis;
+            this.lastBucket = lastBucket;
+        }
+        
+        /**
+         * Opens the sidecar of a log for appending. A sidecar that does not
+         * match the log is started over.
+         */
+        static Updater open(Path log) throws IOException {
+            Path sidecar = sidecarOf(log);
+            FTimeIndex existing = load(log);
+            if (existing != null) {
+                long last = existing.size() > 0 ? existing.buckets[existing.size() - 1] : Long.MIN_VALUE;
+                FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                return new Updater(channel, existing.bucketMillis, last);
+            }
+            FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(DEFAULT_BUCKET_MILLIS).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            return new Updater(channel, DEFAULT_BUCKET_MILLIS, Long.MIN_VALUE);
+        }
+        
+        /**
+         * Notes a record; only the first record of a new bucket is kept.
+         */
+        void record(long timeMillis, long offset) throws IOException {
+            long bucket = Math.floorDiv(timeMillis, bucketMillis) * bucketMillis;
+            if (bucket <= lastBucket) {
+                return;
+            }
+            lastBucket = bucket;
+            if (!pending.hasRemaining()) {
+                // Grow rather than write: the records may not be in the log yet
+                ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            pending.putLong(bucket).putLong(offset);
+        }
+        
+        /**
+         * Writes noted entries; call after the records themselves are written.
+         */
+        void flush() throws IOException {
+            pending.flip();
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+            pending.clear();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+    
+    // ----- PRIVATE HELPER -----
+    private long bucketOf(long millis) {
+        return Math.floorDiv(millis, bucketMillis) * bucketMillis;
+    }
+    
+    /**
+     * Last entry whose bucket is at or before the given one, or -1.
+     */
+    private int floorEntry(long bucket) {
+        int i = Arrays.binarySearch(buckets, bucket);
+        return i >= 0 ? i : -i - 2;
+    }
+}
@@ -0,0 +1,287 @@
+package com.flsl.flog;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe timestamp rendering for log records.
+ * The "[Date: MM/dd/yyyy HH:mm" prefix of the current minute is rendered
+ * once and shared by every record of that minute; seconds and millis are
+ * appended arithmetically. The cache is an immutable tick swapped through
+ * a volatile field, so concurrent writers never lock and never see a
+ * half-updated date.
+ */
+public final class FTimestamp {
+    
+    public enum Format {
+        /** [Date: MM/dd/yyyy HH:mm] (the classic flog format) */
+        MINUTE,
+        /** [Date: MM/dd/yyyy HH:mm:ss] */
+        SECOND,
+        /** [Date: MM/dd/yyyy HH:mm:ss.SSS] */
+        MILLIS,
+        /** [Epoch: milliseconds since 1970-01-01T00:00Z] */
+        EPOCH
+    }
+    
+    private static final String DATE_OPEN = "[Date: ";
+    private static final String EPOCH_OPEN = "[Epoch: ";
+    private static final DateTimeFormatter MINUTE_PATTERN = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm");
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    
+    private final Format format;
+    private final ZoneId zone;
+    private volatile Tick tick = new Tick(0, 0, "");
+    private volatile ParsedMinute lastParsed;
+    
+    /** Rendered prefix of one local minute, valid for [start, end). */
+    private static final class Tick {
+        final long start;
+        final long end;
+        final String prefix;
+        
+        Tick(long start, long end, String prefix) {
+            this.start = start;
+            this.end = end;
+            this.prefix = prefix;
+        }
+    }
+    
+    /** Last minute resolved by parse(), keyed by its packed digits. */
+    private static final class ParsedMinute {
+        final long key;
+        final long epochMillis;
+        
+        ParsedMinute(long key, long epochMillis) {
+            this.key = key;
+            this.epochMillis = epochMillis;
+        }
+    }
+    
+    public FTimestamp(Format format) {
+        this(format, ZoneId.systemDefault());
+    }
+    
+    public FTimestamp(Format format, ZoneId zone) {
+        this.format = format;
+        this.zone = zone;
+    }
+    
+    // ----- RENDERING -----
+    public void appendNow(StringBuilder out) {
+        appendTo(out, System.currentTimeMillis());
+    }
+    
+    public void appendTo(StringBuilder out, long epochMillis) {
+        if (format == Format.EPOCH) {
+            out.append(EPOCH_OPEN).append(epochMillis).append(']');
+            return;
+        }
+        Tick current = tick;
+        if (epochMillis < current.start || epochMillis >= current.end) {
+            current = refresh(epochMillis);
+        }
+        out.append(current.prefix);
+        if (format != Format.MINUTE) {
+            int inMinute = (int) (epochMillis - current.start);
+            int seconds = inMinute / 1000;
+            out.append(':').append((char) ('0' + seconds / 10)).append((char) ('0' + seconds % 10));
+            if (format == Format.MILLIS) {
+                int millis = inMinute % 1000;
+                out.append('.')
+                   .append((char) ('0' + millis / 100))
+                   .append((char) ('0' + millis / 10 % 10))
+                   .append((char) ('0' + millis % 10));
+            }
+        }
+        out.append(']');
+    }
+    
+    public String format(long epochMillis) {
+        StringBuilder out = new StringBuilder(32);
+        appendTo(out, epochMillis);
+        return out.toString();
+    }
+    
+    public Format getFormat() {
+        return format;
+    }
+    
+    public ZoneId getZone() {
+        return zone;
+    }
+    
+    // ----- SEQUENCE -----
+    /**
+     * Next value of the process-wide record sequence. Values increase in
+     * the order records are stamped; with several writing threads, the
+     * file order can differ slightly from the sequence order.
+     */
+    public static long nextSequence() {
+        return SEQUENCE.incrementAndGet();
+    }
+    
+    // ----- PARSING -----
+    /**
+     * Reads the timestamp at the start of a record, in any of the formats,
+     * as epoch millis. Returns -1 when the line has no timestamp.
+     */
+    public long parse(CharSequence line) {
+        int length = line.length();
+        if (startsWith(line, EPOCH_OPEN)) {
+            int end = indexOf(line, ']', EPOCH_OPEN.length());
+            return end < 0 ? -1 : parseDigits(line, EPOCH_OPEN.length(), end);
+        }
+        if (!startsWith(line, DATE_OPEN)) {
+            return -1;
+        }
+        
+        // MM/dd/yyyy HH:mm then optionally :ss and .SSS
+        int p = DATE_OPEN.length();
+        if (length < p + 16 || line.charAt(p + 2) != '/' || line.charAt(p + 5) != '/'
+                || line.charAt(p + 10) != ' ' || line.charAt(p + 13) != ':') {
+            return -1;
+        }
+        long month = parseDigits(line, p, p + 2);
+        long day = parseDigits(line, p + 3, p + 5);
+        long year = parseDigits(line, p + 6, p + 10);
+        long hour = parseDigits(line, p + 11, p + 13);
+        long minute = parseDigits(line, p + 14, p + 16);
+        if (month < 0 || day < 0 || year < 0 || hour < 0 || minute < 0) {
+            return -1;
+        }
+        
+        long result = minuteStart(year, month, day, hour, minute);
+        if (result < 0) {
+            return -1;
+        }
+        p += 16;
+        if (p + 3 <= length && line.charAt(p) == ':') {
+            long seconds = parseDigits(line, p + 1, p + 3);
+            if (seconds < 0) {
+                return -1;
+            }
+            result += seconds * 1000;
+            p += 3;
+            if (p + 4 <= length && line.charAt(p) == '.') {
+                long millis = parseDigits(line, p + 1, p + 4);
+                if (millis < 0) {
+                    return -1;
+                }
+                result += millis;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * The format of the timestamp at the start of a record, or null when
+     * it has none. Only the layout is checked; parse() reads the value.
+     */
+    public static Format formatOf(CharSequence line) {
+        if (startsWith(line, EPOCH_OPEN)) {
+            return Format.EPOCH;
+        }
+        if (!startsWith(line, DATE_OPEN)) {
+            return null;
+        }
+        int p = DATE_OPEN.length() + 16;
+        if (p >= line.length() || line.charAt(p) != ':') {
+            return Format.MINUTE;
+        }
+        p += 3;
+        return p < line.length() && line.charAt(p) == '.' ? Format.MILLIS : Format.SECOND;
+    }
+    
+    /**
+     * Reads the "#N" sequence number of a record, or -1 when it has none.
+     */
+    public static long parseSequence(CharSequence line) {
+        int length = line.length();
+        int start = 0;
+        if (length > 0 && line.charAt(0) == '[') {
+            int arrow = indexOf(line, '>', 0);
+            if (arrow < 0 || arrow + 2 >= length) {
+                return -1;
+            }
+            start = arrow + 2;
+        }
+        if (start >= length || line.charAt(start) != '#') {
+            return -1;
+        }
+        int end = indexOf(line, ' ', start + 1);
+        return parseDigits(line, start + 1, end < 0 ? length : end);
+    }
+    
+    // ----- PRIVATE HELPER -----
+    private Tick refresh(long epochMillis) {
+        Instant instant = Instant.ofEpochMilli(epochMillis);
+        long offsetMillis = zone.getRules().getOffset(instant).getTotalSeconds() * 1000L;
+        long local = epochMillis + offsetMillis;
+        long start = Math.floorDiv(local, 60_000L) * 60_000L - offsetMillis;
+        String prefix = DATE_OPEN + MINUTE_PATTERN.format(instant.atZone(zone));
+        Tick next = new Tick(start, start + 60_000L, prefix);
+        tick = next;
+        return next;
+    }
+    
+    private long minuteStart(long year, long month, long day, long hour, long minute) {
+        long key = (((year * 100 + month) * 100 + day) * 100 + hour) * 100 + minute;
+        ParsedMinute cached = lastParsed;
+        if (cached != null && cached.key == key) {
+            return cached.epochMillis;
+        }
+        long epochMillis;
+        try {
+            epochMillis = LocalDateTime.of((int) year, (int) month, (int) day, (int) hour, (int) minute)
+                .atZone(zone).toInstant().toEpochMilli();
+        } catch (DateTimeException e) {
+            return -1;
+        }
+        lastParsed = new ParsedMinute(key, epochMillis);
+        return epochMillis;
+    }
+    
+    private static boolean startsWith(CharSequence line, String prefix) {
+        if (line.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int indexOf(CharSequence line, char c, int from) {
+        for (int i = from; i < line.length(); i++) {
+            if (line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Parses the decimal digits in [from, to), or -1 if any is not a digit.
+     */
+    private static long parseDigits(CharSequence line, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
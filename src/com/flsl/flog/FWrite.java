@@ -1,16 +1,19 @@
 package com.flsl.flog;
 
 import java.io.*;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.Map;
 
 public class FWrite {
     
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("[Date: MM/dd/yyyy HH:mm]");
+    private static volatile FTimestamp timestamp = new FTimestamp(FTimestamp.Format.MINUTE);
+    private static volatile boolean sequenceNumbers = false;
+    private static volatile boolean timeIndexing = true;
     
     /**
      * Writes data to a file in a structured format.
+     * The record goes through the file's shared FAppender, which keeps the
+     * file open; the call returns once the line is in the file. Files
+     * ending in ".flb" get the binary format (FBinaryLog).
      * 
      * @param file The file to write to (will be created/appended).
      * @param data A Map where key is the event/field name and value is its state.
@@ -18,31 +21,134 @@ public class FWrite {
      * @throws IOException If the file cannot be written.
      */
     public static void write(File file, Map<String, Object> data, boolean enableDateExport) throws IOException {
-        try (FileWriter fw = new FileWriter(file, true);
-             BufferedWriter bw = new BufferedWriter(fw)) {
-            
-            StringBuilder line = new StringBuilder();
-            
-            // Add timestamp if enabled
-            if (enableDateExport) {
-                line.append(DATE_FORMAT.format(new Date())).append(" -> ");
+        write(FAppender.forFile(file), data, enableDateExport, false);
+    }
+    
+    /**
+     * Like write(), but returns as soon as the record is queued.
+     * Use flush() to wait for queued records and see write errors.
+     */
+    public static void writeAsync(File file, Map<String, Object> data, boolean enableDateExport) throws IOException {
+        write(FAppender.forFile(file), data, enableDateExport, true);
+    }
+    
+    /**
+     * Formats the record for the appender's file and appends it.
+     */
+    static void write(FAppender appender, Map<String, Object> data, boolean enableDateExport,
+                      boolean async) throws IOException {
+        long time = enableDateExport ? System.currentTimeMillis() : -1;
+        long indexTime = timeIndexing ? time : -1;
+        if (appender.isBinary()) {
+            FBinaryLog.Record record = toRecord(data, time);
+            if (async) {
+                appender.appendRecordAsync(record, indexTime);
+            } else {
+                appender.appendRecord(record, indexTime);
             }
-            
-            // Format the data: [key = value, key2 = value2]
-            line.append("[");
-            boolean firstEntry = true;
-            for (Map.Entry<String, Object> entry : data.entrySet()) {
-                if (!firstEntry) {
-                    line.append(", ");
-                }
-                line.append(entry.getKey()).append(" = ").append(entry.getValue());
-                firstEntry = false;
+        } else if (async) {
+            appender.appendAsync(formatLine(data, time), indexTime);
+        } else {
+            appender.append(formatLine(data, time), indexTime);
+        }
+    }
+    
+    /**
+     * Waits until every record queued for the file has been written.
+     */
+    public static void flush(File file) throws IOException {
+        FAppender.forFile(file).flush();
+    }
+    
+    /**
+     * Flushes and closes the appenders of all files.
+     */
+    public static void closeAll() {
+        FAppender.closeAll();
+    }
+    
+    /**
+     * Resolution of the timestamp prefix. MINUTE (the default) keeps the
+     * classic "[Date: MM/dd/yyyy HH:mm]" format.
+     */
+    public static void setTimestampFormat(FTimestamp.Format format) {
+        timestamp = new FTimestamp(format);
+    }
+    
+    public static FTimestamp.Format getTimestampFormat() {
+        return timestamp.getFormat();
+    }
+    
+    /**
+     * Prefixes the data of every record with "#N ", a process-wide
+     * increasing sequence number.
+     */
+    public static void setSequenceNumbers(boolean enabled) {
+        sequenceNumbers = enabled;
+    }
+    
+    public static boolean isSequenceNumbers() {
+        return sequenceNumbers;
+    }
+    
+    /**
+     * Keeps a ".tidx" time index (FTimeIndex) next to every file written
+     * with timestamps, so time-range reads can skip to the right offset.
+     * On by default.
+     */
+    public static void setTimeIndexing(boolean enabled) {
+        timeIndexing = enabled;
+    }
+    
+    public static boolean isTimeIndexing() {
+        return timeIndexing;
+    }
+    
+    /**
+     * Renders one record; a negative time leaves out the timestamp.
+     */
+    static String formatLine(Map<String, Object> data, long time) {
+        return formatLine(data, time, sequenceNumbers ? FTimestamp.nextSequence() : -1);
+    }
+    
+    /**
+     * Renders one record with the given sequence number; negative leaves it out.
+     */
+    static String formatLine(Map<String, ?> data, long time, long sequence) {
+        return formatLine(data, time, sequence, timestamp);
+    }
+    
+    /**
+     * Renders one record with the given timestamp format.
+     */
+    static String formatLine(Map<String, ?> data, long time, long sequence, FTimestamp stamp) {
+        StringBuilder line = new StringBuilder();
+        
+        // Add timestamp if enabled
+        if (time >= 0) {
+            stamp.appendTo(line, time);
+            line.append(" -> ");
+        }
+        if (sequence >= 0) {
+            line.append('#').append(sequence).append(' ');
+        }
+        
+        // Format the data: [key = value, key2 = value2]
+        line.append("[");
+        boolean firstEntry = true;
+        for (Map.Entry<String, ?> entry : data.entrySet()) {
+            if (!firstEntry) {
+                line.append(", ");
             }
-            line.append("]");
-            
-            // Write to file
-            bw.write(line.toString());
-            bw.newLine();
+            line.append(entry.getKey()).append(" = ").append(entry.getValue());
+            firstEntry = false;
         }
+        line.append("]");
+        return line.toString();
+    }
+    
+    private static FBinaryLog.Record toRecord(Map<String, Object> data, long time) {
+        return new FBinaryLog.Record(time, sequenceNumbers ? FTimestamp.nextSequence() : -1,
+                                     timestamp.getFormat(), data);
     }
-}
\ No newline at end of file
+}